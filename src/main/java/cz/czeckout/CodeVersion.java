@@ -0,0 +1,101 @@
+package cz.czeckout;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * Digests of the code the application runs, for the on-disk caches whose entries are only valid for the code that
+ * produced them. A class stands for the whole artifact it is loaded from: the JAR file, or all the class files of the
+ * output directory during development, so every build that changes the code changes the digest as well.
+ */
+public final class CodeVersion {
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    /**
+     * Location standing for the classes of the Java runtime, which have no code source.
+     */
+    private static final String RUNTIME = "java:";
+
+    /**
+     * Digests of the artifacts by their location, each artifact is read once per run.
+     */
+    private static final Map<String, byte[]> ARTIFACT_DIGESTS = new ConcurrentHashMap<>();
+
+    private CodeVersion() {
+    }
+
+    /**
+     * @param classes classes whose artifacts the digest covers, in any order
+     * @return hexadecimal digest of the artifacts
+     * @throws UncheckedIOException if an artifact cannot be read
+     */
+    @NonNull
+    public static String of(@NonNull final Class<?> @NonNull ... classes) {
+        final var locations = new TreeSet<String>();
+        for (var type : classes) {
+            final var codeSource = type.getProtectionDomain().getCodeSource();
+            locations.add(codeSource == null || codeSource.getLocation() == null
+                ? RUNTIME
+                : codeSource.getLocation().toString());
+        }
+
+        final var digest = Digests.newDigest();
+        for (var location : locations) {
+            Digests.update(digest, ARTIFACT_DIGESTS.computeIfAbsent(location, CodeVersion::digestArtifact));
+        }
+        return HEX.formatHex(digest.digest());
+    }
+
+    private static byte @NonNull [] digestArtifact(@NonNull final String location) {
+        final var digest = Digests.newDigest();
+        Digests.update(digest, location);
+        final Path path;
+        try {
+            path = RUNTIME.equals(location) ? null : Path.of(new URI(location));
+        } catch (URISyntaxException | IllegalArgumentException | FileSystemNotFoundException e) {
+            // Neither a file nor a directory, such as a nested JAR, only the location itself is known
+            return digest.digest();
+        }
+
+        try {
+            if (path == null) {
+                Digests.update(digest, Runtime.version().toString().getBytes(StandardCharsets.US_ASCII));
+            } else if (Files.isDirectory(path)) {
+                final List<Path> classFiles;
+                try (var files = Files.walk(path)) {
+                    classFiles = files
+                        .filter(file -> file.getFileName().toString().endsWith(".class"))
+                        .sorted()
+                        .toList();
+                }
+                for (var classFile : classFiles) {
+                    Digests.update(digest, path.relativize(classFile).toString());
+                    Digests.update(digest, Files.readAllBytes(classFile));
+                }
+            } else {
+                try (var in = new DigestInputStream(Files.newInputStream(path), digest)) {
+                    in.transferTo(OutputStream.nullOutputStream());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot digest the code of " + location, e);
+        }
+        return digest.digest();
+    }
+}
@@ -0,0 +1,80 @@
+package cz.czeckout;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * Digests and files of the on-disk caches: the parse cache, the PDF manifest and the code versions they are keyed on.
+ */
+public final class Digests {
+
+    @FunctionalInterface
+    public interface Body {
+        void write(@NonNull DataOutputStream out) throws IOException;
+    }
+
+    private Digests() {
+    }
+
+    /**
+     * @return new SHA-256 digest
+     */
+    @NonNull
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Updates the digest by the length-prefixed bytes, so that the consecutive parts cannot shift into each other.
+     */
+    public static void update(@NonNull final MessageDigest digest, final byte @NonNull [] part) {
+        updateInt(digest, part.length);
+        digest.update(part);
+    }
+
+    /**
+     * Updates the digest by the length-prefixed UTF-8 bytes of the text.
+     */
+    public static void update(@NonNull final MessageDigest digest, @NonNull final String part) {
+        update(digest, part.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Updates the digest by the four big-endian bytes of the value.
+     */
+    public static void updateInt(@NonNull final MessageDigest digest, final int value) {
+        digest.update((byte) (value >>> 24));
+        digest.update((byte) (value >>> 16));
+        digest.update((byte) (value >>> 8));
+        digest.update((byte) value);
+    }
+
+    /**
+     * Writes the file aside and moves it in place, so that an interrupted run never leaves a truncated file behind.
+     * The file is replaced only once the body is written completely.
+     */
+    public static void writeAtomically(@NonNull final Path file, @NonNull final Body body) throws IOException {
+        final var temporaryFile = Files.createTempFile(file.toAbsolutePath().getParent(),
+            file.getFileName().toString(), ".tmp");
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+            body.write(out);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporaryFile);
+            throw e;
+        }
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -1,5 +1,7 @@
 package cz.czeckout;
 
+import java.nio.file.Path;
+
 import com.fasterxml.jackson.annotation.JsonInclude;
 import tools.jackson.databind.DeserializationFeature;
 import tools.jackson.databind.SerializationFeature;
@@ -9,7 +11,11 @@ import tools.jackson.dataformat.xml.XmlMapper;
 import tools.jackson.databind.ObjectMapper;
 import org.checkerframework.checker.nullness.qual.NonNull;
 
+import cz.czeckout.fop.RenderingEngine;
+import cz.czeckout.generator.QRCache;
 import cz.czeckout.jackson.BigDecimalModule;
+import cz.czeckout.output.DirectorySink;
+import cz.czeckout.parser.FormulaEvaluationPolicy;
 import cz.czeckout.service.DataParsingService;
 import cz.czeckout.service.InvoiceProcessingService;
 import cz.czeckout.service.PdfGenerationService;
@@ -21,7 +27,7 @@ public class InvoiceApplication {
     private final JsonMapper jsonMapper;
     private final InvoiceProcessingService processingService;
 
-    public InvoiceApplication() {
+    public InvoiceApplication() throws Exception {
         this.xmlMapper = configure(XmlMapper.builder())
             .defaultUseWrapper(false)
             .build();
@@ -40,17 +46,33 @@ public class InvoiceApplication {
     }
 
     @NonNull
-    private InvoiceProcessingService createProcessingService() {
-        final var dataParsingService = new DataParsingService();
-        final var qrCodeService = new QRCodeService(true); // Generate picture files
-        final var pdfGenerationService = new PdfGenerationService(xmlMapper);
+    private InvoiceProcessingService createProcessingService() throws Exception {
+        final var dataParsingService = new DataParsingService(
+            false,
+            1,
+            FormulaEvaluationPolicy.ALWAYS,
+            null); // No parse cache, see WorkbookParseCache for what it does not track
+        // Shared by the QR codes of the invoices and the PDFs drawing them
+        final var qrCache = new QRCache(1024);
+        final var qrCodeService = new QRCodeService(true, qrCache); // Generate picture files
+        final var renderingEngine = new RenderingEngine(Path.of("src/main/resources"), qrCache);
+        renderingEngine.preload();
+        final var pdfGenerationService = new PdfGenerationService(
+            xmlMapper,
+            renderingEngine,
+            Runtime.getRuntime().availableProcessors(),
+            true); // Render only the changed invoices
 
         return new InvoiceProcessingService(
             dataParsingService,
             qrCodeService,
             pdfGenerationService,
             jsonMapper,
-            xmlMapper
+            xmlMapper,
+            Runtime.getRuntime().availableProcessors(),
+            // A folder per sheet, a ZipSink would write a single archive per sheet instead
+            sheetName -> new DirectorySink(Path.of("target/" + sheetName)),
+            false // Indented exports, true writes them compact
         );
     }
 
@@ -1,6 +1,8 @@
 package cz.czeckout.entity;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Setter;
 
 
 @Data
@@ -19,7 +21,25 @@ public class Account {
      */
     private String iban;
 
-    public String getRawIban() {
-        return iban.replaceAll("\\s", "");
+    /**
+     * IBAN without spaces, derived once the formatted one is set.
+     */
+    @Setter(AccessLevel.NONE)
+    private String rawIban;
+
+    public void setIban(final String iban) {
+        this.iban = iban;
+        this.rawIban = iban == null ? null : removeWhitespace(iban);
+    }
+
+    private static String removeWhitespace(final String text) {
+        final var result = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            final var c = text.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                result.append(c);
+            }
+        }
+        return result.length() == text.length() ? text : result.toString();
     }
 }
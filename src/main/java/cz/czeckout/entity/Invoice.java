@@ -49,4 +49,17 @@ public class Invoice {
     private String qrSvg;
 
     private List<Item> items = new ArrayList<>();
+
+    /**
+     * VAT recapitulation of the items, set once the items are complete.
+     */
+    private VatRecap recap;
+
+    /**
+     * @return total of the VAT recapitulation, the amount to pay, the recapitulation is computed if not set yet
+     */
+    @JsonIgnore
+    public BigDecimal getTotalAmount() {
+        return (recap != null ? recap : VatRecap.of(items)).getTotalPrice();
+    }
 }
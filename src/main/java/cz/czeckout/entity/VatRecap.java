@@ -0,0 +1,88 @@
+package cz.czeckout.entity;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * VAT recapitulation of an invoice: the base, VAT and total amounts of every VAT rate, the highest rate first, and the
+ * grand totals. The base and VAT amounts of the items are summed exactly and rounded to hellers once per rate, the
+ * total of a rate is the sum of its rounded base and VAT, and the grand totals are the sums of the rates. So every
+ * printed rate adds up, the rates add up to the printed grand totals, and the QR code pays exactly the printed total.
+ * The items without a VAT rate only count in the grand totals.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VatRecap {
+
+    /**
+     * Amounts with more decimal places are rounded to this scale by {@link #ROUNDING}.
+     */
+    public static final int SCALE = 2;
+
+    public static final RoundingMode ROUNDING = RoundingMode.HALF_UP;
+
+    private List<VatRecapRate> rates = new ArrayList<>();
+
+    private BigDecimal basePrice;
+
+    private BigDecimal vatPrice;
+
+    private BigDecimal totalPrice;
+
+    /**
+     * @return recapitulation of the items, computed in a single pass over them
+     */
+    @NonNull
+    public static VatRecap of(@NonNull final List<Item> items) {
+        // Equal rates of different scales, such as 0.21 and 0.210, are one rate
+        final var byRate = new TreeMap<BigDecimal, VatRecapRate>(Comparator.reverseOrder());
+        final var unrated = new VatRecapRate(null, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO);
+        for (var item : items) {
+            final var rate = item.getVatRate() == null
+                ? unrated
+                : byRate.computeIfAbsent(item.getVatRate(),
+                    vatRate -> new VatRecapRate(vatRate, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO));
+            rate.setBasePrice(add(rate.getBasePrice(), item.getBasePrice()));
+            rate.setVatPrice(add(rate.getVatPrice(), item.getVatPrice()));
+        }
+
+        final var recap = new VatRecap(
+            new ArrayList<>(byRate.values()), BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO);
+        for (var rate : recap.getRates()) {
+            recap.addRounded(rate);
+        }
+        recap.addRounded(unrated);
+        return recap;
+    }
+
+    private void addRounded(@NonNull final VatRecapRate rate) {
+        rate.setBasePrice(round(rate.getBasePrice()));
+        rate.setVatPrice(round(rate.getVatPrice()));
+        rate.setTotalPrice(rate.getBasePrice().add(rate.getVatPrice()));
+        basePrice = basePrice.add(rate.getBasePrice());
+        vatPrice = vatPrice.add(rate.getVatPrice());
+        totalPrice = totalPrice.add(rate.getTotalPrice());
+    }
+
+    @NonNull
+    private static BigDecimal add(@NonNull final BigDecimal sum, @Nullable final BigDecimal amount) {
+        return amount == null ? sum : sum.add(amount);
+    }
+
+    @NonNull
+    private static BigDecimal round(@NonNull final BigDecimal amount) {
+        return amount.scale() > SCALE ? amount.setScale(SCALE, ROUNDING) : amount;
+    }
+}
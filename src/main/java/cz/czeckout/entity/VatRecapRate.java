@@ -0,0 +1,22 @@
+package cz.czeckout.entity;
+
+import java.math.BigDecimal;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VatRecapRate {
+
+    private BigDecimal vatRate;
+
+    private BigDecimal basePrice;
+
+    private BigDecimal vatPrice;
+
+    private BigDecimal totalPrice;
+}
@@ -0,0 +1,187 @@
+package cz.czeckout.fop;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+
+/**
+ * Joins FO documents of the same layout into one document made of their page sequences. The documents are written
+ * one after another, FOP renders every page sequence once it ends and releases it, so the memory does not grow with
+ * the number of the joined documents.
+ * <p>
+ * The first document is passed whole except for its end. Of the following documents, only the page sequences are
+ * passed, their root with the layout master set is dropped, so all the documents must share it. The joined document is
+ * ended by {@link #finish()}.
+ */
+public final class PageSequenceJoiner implements ContentHandler {
+
+    private static final String FO_NAMESPACE = "http://www.w3.org/1999/XSL/Format";
+
+    private static final String PAGE_SEQUENCE = "page-sequence";
+
+    private record PrefixMapping(@NonNull String prefix, @NonNull String uri) {
+    }
+
+    private record Root(@NonNull String uri, @NonNull String localName, @NonNull String qName) {
+    }
+
+    private final ContentHandler handler;
+
+    /**
+     * Prefix mappings of the next element, passed only if the element is.
+     */
+    private final List<PrefixMapping> pendingPrefixes = new ArrayList<>();
+
+    /**
+     * Prefixes of the root of the first document, ended by {@link #finish()}.
+     */
+    private final List<String> rootPrefixes = new ArrayList<>();
+
+    /**
+     * Whether the open element at the given depth is passed.
+     */
+    private final BitSet passed = new BitSet();
+
+    private boolean started;
+
+    private boolean firstDocument;
+
+    private int depth;
+
+    /**
+     * Whether the element ended last was passed, so are its prefix mappings ending after it.
+     */
+    private boolean endedPassed;
+
+    @Nullable
+    private Root root;
+
+    public PageSequenceJoiner(@NonNull final ContentHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Ends the joined document.
+     */
+    public void finish() throws SAXException {
+        if (root == null) {
+            throw new IllegalStateException("No document to finish");
+        }
+        handler.endElement(root.uri(), root.localName(), root.qName());
+        for (var prefix : rootPrefixes) {
+            handler.endPrefixMapping(prefix);
+        }
+        handler.endDocument();
+    }
+
+    @Override
+    public void setDocumentLocator(final Locator locator) {
+        if (!started) {
+            handler.setDocumentLocator(locator);
+        }
+    }
+
+    @Override
+    public void startDocument() throws SAXException {
+        firstDocument = !started;
+        depth = 0;
+        if (firstDocument) {
+            started = true;
+            handler.startDocument();
+        }
+    }
+
+    @Override
+    public void endDocument() {
+        // Ended once by finish()
+    }
+
+    @Override
+    public void startPrefixMapping(final String prefix, final String uri) {
+        pendingPrefixes.add(new PrefixMapping(prefix, uri));
+    }
+
+    @Override
+    public void endPrefixMapping(final String prefix) throws SAXException {
+        if (depth == 0 && firstDocument) {
+            rootPrefixes.add(prefix);
+        } else if (endedPassed) {
+            handler.endPrefixMapping(prefix);
+        }
+    }
+
+    @Override
+    public void startElement(final String uri, final String localName, final String qName, final Attributes atts)
+        throws SAXException {
+        depth++;
+        final boolean pass;
+        if (depth == 1) {
+            pass = firstDocument;
+            if (pass) {
+                root = new Root(uri, localName, qName);
+            }
+        } else if (depth == 2 && !firstDocument) {
+            pass = FO_NAMESPACE.equals(uri) && PAGE_SEQUENCE.equals(localName);
+        } else {
+            pass = passed.get(depth - 1);
+        }
+        passed.set(depth, pass);
+
+        if (pass) {
+            for (var mapping : pendingPrefixes) {
+                handler.startPrefixMapping(mapping.prefix(), mapping.uri());
+            }
+            handler.startElement(uri, localName, qName, atts);
+        }
+        pendingPrefixes.clear();
+    }
+
+    @Override
+    public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+        // The root is ended by finish()
+        endedPassed = depth > 1 && passed.get(depth);
+        if (endedPassed) {
+            handler.endElement(uri, localName, qName);
+        }
+        depth--;
+    }
+
+    @Override
+    public void characters(final char[] ch, final int start, final int length) throws SAXException {
+        if (isPassing()) {
+            handler.characters(ch, start, length);
+        }
+    }
+
+    @Override
+    public void ignorableWhitespace(final char[] ch, final int start, final int length) throws SAXException {
+        if (isPassing()) {
+            handler.ignorableWhitespace(ch, start, length);
+        }
+    }
+
+    @Override
+    public void processingInstruction(final String target, final String data) throws SAXException {
+        if (isPassing()) {
+            handler.processingInstruction(target, data);
+        }
+    }
+
+    @Override
+    public void skippedEntity(final String name) throws SAXException {
+        if (isPassing()) {
+            handler.skippedEntity(name);
+        }
+    }
+
+    private boolean isPassing() {
+        return depth > 0 && passed.get(depth);
+    }
+}
@@ -0,0 +1,43 @@
+package cz.czeckout.fop;
+
+import java.awt.geom.Point2D;
+
+import org.apache.fop.fo.FONode;
+import org.apache.fop.fo.XMLObj;
+
+import com.google.zxing.WriterException;
+
+/**
+ * The {@code czq:qr} element. Its intrinsic size is one point per module, the actual size is set by the enclosing
+ * {@code fo:instream-foreign-object}.
+ */
+public class QRElement extends XMLObj {
+
+    public QRElement(final FONode parent) {
+        super(parent);
+    }
+
+    @Override
+    public String getNamespaceURI() {
+        return QRElementMapping.NAMESPACE;
+    }
+
+    @Override
+    public String getNormalNamespacePrefix() {
+        return "czq";
+    }
+
+    @Override
+    public Point2D getDimension(final Point2D view) {
+        if (element == null) {
+            createBasicDocument();
+        }
+        try {
+            final var matrix = QRElementMapping.encode(element, getUserAgent());
+            return new Point2D.Float(matrix.getWidth(), matrix.getHeight());
+        } catch (WriterException e) {
+            // Reported again once the element is painted
+            return null;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package cz.czeckout.fop;
+
+import java.util.HashMap;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.fo.ElementMapping;
+import org.apache.fop.fo.FONode;
+import org.w3c.dom.DOMImplementation;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import cz.czeckout.generator.QRCache;
+import cz.czeckout.generator.QREncoder;
+
+/**
+ * FOP extension drawing QR codes straight into the output as filled vector shapes, without going through SVG:
+ * <pre>{@code
+ * <fo:instream-foreign-object content-width="175px" content-height="175px">
+ *     <czq:qr xmlns:czq="urn:czeckout:fop:qr" payload="SPD*1.0*..."/>
+ * </fo:instream-foreign-object>
+ * }</pre>
+ * The element is recognized by {@link QRImagePreloader} and painted by {@link QRImageLoaderFactory}. All of them are
+ * registered in {@code META-INF/services}.
+ */
+public class QRElementMapping extends ElementMapping {
+
+    public static final String NAMESPACE = "urn:czeckout:fop:qr";
+
+    public static final String PAYLOAD_ATTRIBUTE = "payload";
+
+    /**
+     * Key of the {@link QRCache} among the renderer options of the user agent, see {@link RenderingEngine#newPdf}.
+     * Without a cache every payload is encoded again.
+     */
+    static final String QR_CACHE_OPTION = QRCache.class.getName();
+
+    /**
+     * Key of the matrix in the user data of the {@code czq:qr} document, set once the element is laid out, so that the
+     * document is painted from the same matrix.
+     */
+    private static final String MATRIX_KEY = BitMatrix.class.getName();
+
+    public QRElementMapping() {
+        namespaceURI = NAMESPACE;
+    }
+
+    @Override
+    public DOMImplementation getDOMImplementation() {
+        return getDefaultDOMImplementation();
+    }
+
+    @Override
+    public String getStandardPrefix() {
+        return "czq";
+    }
+
+    @Override
+    protected void initialize() {
+        if (foObjs == null) {
+            foObjs = new HashMap<>();
+            foObjs.put("qr", new QRMaker());
+        }
+    }
+
+    /**
+     * Encodes the payload of the element and attaches the matrix to its document.
+     */
+    static BitMatrix encode(final Element element, final FOUserAgent userAgent) throws WriterException {
+        final var payload = element.getAttribute(PAYLOAD_ATTRIBUTE);
+        checkPayload(payload);
+        final var matrix = userAgent.getRendererOptions().get(QR_CACHE_OPTION) instanceof QRCache qrCache
+            ? qrCache.get(payload).getMatrix()
+            : QREncoder.encode(payload);
+        element.getOwnerDocument().setUserData(MATRIX_KEY, matrix, null);
+        return matrix;
+    }
+
+    /**
+     * @return matrix attached to the document once laid out, encoded again if there is none
+     */
+    static BitMatrix getMatrix(final Document document) throws WriterException {
+        if (document.getUserData(MATRIX_KEY) instanceof BitMatrix matrix) {
+            return matrix;
+        }
+        final var payload = document.getDocumentElement().getAttribute(PAYLOAD_ATTRIBUTE);
+        checkPayload(payload);
+        return QREncoder.encode(payload);
+    }
+
+    private static void checkPayload(final String payload) throws WriterException {
+        if (payload == null || payload.isEmpty()) {
+            throw new WriterException("QR payload is missing");
+        }
+    }
+
+    private static final class QRMaker extends ElementMapping.Maker {
+
+        @Override
+        public FONode make(final FONode parent) {
+            return new QRElement(parent);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package cz.czeckout.fop;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Map;
+
+import org.apache.xmlgraphics.image.loader.Image;
+import org.apache.xmlgraphics.image.loader.ImageException;
+import org.apache.xmlgraphics.image.loader.ImageFlavor;
+import org.apache.xmlgraphics.image.loader.ImageInfo;
+import org.apache.xmlgraphics.image.loader.ImageSessionContext;
+import org.apache.xmlgraphics.image.loader.impl.AbstractImageLoader;
+import org.apache.xmlgraphics.image.loader.impl.AbstractImageLoaderFactory;
+import org.apache.xmlgraphics.image.loader.impl.ImageGraphics2D;
+import org.apache.xmlgraphics.image.loader.impl.ImageXMLDOM;
+import org.apache.xmlgraphics.image.loader.spi.ImageLoader;
+import org.apache.xmlgraphics.java2d.Graphics2DImagePainter;
+
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import cz.czeckout.generator.QRModuleRuns;
+
+/**
+ * Turns the {@code czq:qr} documents recognized by {@link QRImagePreloader} into Java2D painters. The PDF output
+ * paints them as vector shapes, each module run is filled as a rectangle, which it writes as a compact {@code re}.
+ */
+public class QRImageLoaderFactory extends AbstractImageLoaderFactory {
+
+    private static final String[] MIME_TYPES = {QRImagePreloader.MIME_TYPE};
+
+    private static final ImageFlavor[] FLAVORS = {ImageFlavor.GRAPHICS2D};
+
+    @Override
+    public String[] getSupportedMIMETypes() {
+        return MIME_TYPES;
+    }
+
+    @Override
+    public ImageFlavor[] getSupportedFlavors(final String mime) {
+        return FLAVORS;
+    }
+
+    @Override
+    public ImageLoader newImageLoader(final ImageFlavor targetFlavor) {
+        return new QRImageLoader();
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    private static final class QRImageLoader extends AbstractImageLoader {
+
+        @Override
+        public Image loadImage(final ImageInfo info, final Map<String, Object> hints, final ImageSessionContext session)
+            throws ImageException {
+            if (!(info.getOriginalImage() instanceof ImageXMLDOM dom)) {
+                throw new ImageException("QR code was not preloaded: " + info);
+            }
+            try {
+                return new ImageGraphics2D(info, new QRPainter(QRElementMapping.getMatrix(dom.getDocument())));
+            } catch (WriterException e) {
+                throw new ImageException("Cannot encode QR code", e);
+            }
+        }
+
+        @Override
+        public ImageFlavor getTargetFlavor() {
+            return ImageFlavor.GRAPHICS2D;
+        }
+    }
+
+    private static final class QRPainter implements Graphics2DImagePainter {
+
+        private final BitMatrix matrix;
+
+        private QRPainter(final BitMatrix matrix) {
+            this.matrix = matrix;
+        }
+
+        @Override
+        public void paint(final Graphics2D g2d, final Rectangle2D area) {
+            g2d.setColor(Color.WHITE); // white background
+            g2d.fill(area);
+            g2d.translate(area.getX(), area.getY());
+            g2d.scale(area.getWidth() / matrix.getWidth(), area.getHeight() / matrix.getHeight());
+            g2d.setColor(Color.BLACK);
+
+            // Each run is a rectangle one module high, like in the SVG
+            final var run = new Rectangle2D.Float();
+            QRModuleRuns.forEach(matrix, (x, y, length) -> {
+                run.setRect(x, y, length, 1);
+                g2d.fill(run);
+            });
+        }
+
+        @Override
+        public Dimension getImageSize() {
+            // In millipoints, one point per module
+            return new Dimension(matrix.getWidth() * 1000, matrix.getHeight() * 1000);
+        }
+    }
+}
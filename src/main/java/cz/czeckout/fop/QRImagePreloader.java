@@ -0,0 +1,60 @@
+package cz.czeckout.fop;
+
+import javax.xml.transform.Source;
+import javax.xml.transform.dom.DOMSource;
+
+import org.apache.xmlgraphics.image.loader.ImageContext;
+import org.apache.xmlgraphics.image.loader.ImageException;
+import org.apache.xmlgraphics.image.loader.ImageFlavor;
+import org.apache.xmlgraphics.image.loader.ImageInfo;
+import org.apache.xmlgraphics.image.loader.ImageSize;
+import org.apache.xmlgraphics.image.loader.XMLNamespaceEnabledImageFlavor;
+import org.apache.xmlgraphics.image.loader.impl.AbstractImagePreloader;
+import org.apache.xmlgraphics.image.loader.impl.ImageXMLDOM;
+import org.w3c.dom.Document;
+
+import com.google.zxing.WriterException;
+
+/**
+ * Recognizes the {@code czq:qr} documents handed over by FOP for painting, the document itself is the image.
+ */
+public class QRImagePreloader extends AbstractImagePreloader {
+
+    public static final String MIME_TYPE = "application/x-czeckout-qr";
+
+    static final XMLNamespaceEnabledImageFlavor FLAVOR =
+        new XMLNamespaceEnabledImageFlavor(ImageFlavor.XML_DOM, QRElementMapping.NAMESPACE);
+
+    @Override
+    public ImageInfo preloadImage(final String uri, final Source src, final ImageContext context) throws ImageException {
+        if (!(src instanceof DOMSource domSource) || !(domSource.getNode() instanceof Document document)
+            || !QRElementMapping.NAMESPACE.equals(document.getDocumentElement().getNamespaceURI())) {
+            return null;
+        }
+
+        final int modules;
+        try {
+            modules = QRElementMapping.getMatrix(document).getWidth();
+        } catch (WriterException e) {
+            throw new ImageException("Cannot encode QR code", e);
+        }
+
+        final var info = new ImageInfo(uri, MIME_TYPE);
+        final var size = new ImageSize();
+        // One point per module, like the intrinsic size of the element
+        size.setSizeInMillipoints(modules * 1000, modules * 1000);
+        size.setResolution(context.getSourceResolution());
+        size.calcPixelsFromSize();
+        info.setSize(size);
+        info.getCustomObjects().put(ImageInfo.ORIGINAL_IMAGE, new ImageXMLDOM(info, document, FLAVOR));
+        return info;
+    }
+
+    /**
+     * Ahead of the preloaders of FOP, the WMF one looks up a new {@code TransformerFactory} for every DOM image.
+     */
+    @Override
+    public int getPriority() {
+        return DEFAULT_PRIORITY / 10;
+    }
+}
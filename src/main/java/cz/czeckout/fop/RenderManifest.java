@@ -0,0 +1,144 @@
+package cz.czeckout.fop;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import cz.czeckout.Digests;
+
+/**
+ * Manifest of the PDFs rendered into a directory, recording the fingerprint of everything every PDF was rendered from:
+ * the document, the layout parameters and the {@linkplain RenderingEngine#getVersion() rendering setup}. A PDF whose
+ * fingerprint has not changed since it was rendered does not have to be rendered again.
+ * <p>
+ * The manifest is stored in the directory of the PDFs. An unreadable manifest is reported and treated as empty, so
+ * all the PDFs are rendered again.
+ */
+public final class RenderManifest {
+
+    public static final String FILE_NAME = "pdf-manifest.bin";
+
+    /**
+     * Bumped whenever the binary format or the fingerprints change, which invalidates all existing manifests.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int MAGIC = 0x435A4B4D; // CZKM
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final Path file;
+
+    /**
+     * Digest of the rendering setup and the parameters, shared by the fingerprints of all the documents.
+     */
+    private final byte[] context;
+
+    /**
+     * Recorded fingerprints by PDF file name.
+     */
+    private final Map<String, String> fingerprints;
+
+    private RenderManifest(@NonNull final Path file,
+                           final byte @NonNull [] context,
+                           @NonNull final Map<String, String> fingerprints) {
+        this.file = file;
+        this.context = context;
+        this.fingerprints = fingerprints;
+    }
+
+    /**
+     * @param renderingVersion version of the rendering setup the PDFs are rendered by
+     * @param parameters parameters of the layout, the same for all the PDFs
+     * @return manifest of the directory, empty if the directory has none yet
+     */
+    @NonNull
+    public static RenderManifest load(@NonNull final Path directory,
+                                      @NonNull final String renderingVersion,
+                                      @NonNull final Map<String, String> parameters) {
+        final var digest = Digests.newDigest();
+        Digests.update(digest, renderingVersion);
+        // Sorted, the order the parameters are set in does not change the PDFs
+        for (var parameter : new TreeMap<>(parameters).entrySet()) {
+            Digests.update(digest, parameter.getKey());
+            Digests.update(digest, String.valueOf(parameter.getValue()));
+        }
+
+        final var file = directory.resolve(FILE_NAME);
+        return new RenderManifest(file, digest.digest(), read(file));
+    }
+
+    /**
+     * @param document digest updated by the document exactly as passed to the layout, completed here
+     * @return fingerprint of the PDF of the document
+     */
+    @NonNull
+    public String fingerprint(@NonNull final MessageDigest document) {
+        final var digest = Digests.newDigest();
+        Digests.update(digest, context);
+        Digests.update(digest, document.digest());
+        return HEX.formatHex(digest.digest());
+    }
+
+    /**
+     * @return whether the PDF exists and has been rendered from the same fingerprint
+     */
+    public boolean isCurrent(@NonNull final Path pdf, @NonNull final String fingerprint) {
+        return fingerprint.equals(fingerprints.get(pdf.getFileName().toString())) && Files.isRegularFile(pdf);
+    }
+
+    /**
+     * Replaces the recorded fingerprints by the given ones.
+     *
+     * @param pdfFingerprints fingerprints by PDF, only the PDFs in the directory of the manifest
+     */
+    public void store(@NonNull final Map<Path, String> pdfFingerprints) {
+        fingerprints.clear();
+        pdfFingerprints.forEach((pdf, fingerprint) -> fingerprints.put(pdf.getFileName().toString(), fingerprint));
+        try {
+            Digests.writeAtomically(file, out -> {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(fingerprints.size());
+                for (var entry : fingerprints.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeUTF(entry.getValue());
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write PDF manifest " + file, e);
+        }
+    }
+
+    @NonNull
+    private static Map<String, String> read(@NonNull final Path file) {
+        final var fingerprints = new HashMap<String, String>();
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unknown format");
+            }
+            final var count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                fingerprints.put(in.readUTF(), in.readUTF());
+            }
+            return fingerprints;
+        } catch (NoSuchFileException e) {
+            return fingerprints;
+        } catch (IOException e) {
+            System.out.println("Cannot read PDF manifest " + file + ", rendering all PDFs: " + e.getMessage());
+            fingerprints.clear();
+            return fingerprints;
+        }
+    }
+}
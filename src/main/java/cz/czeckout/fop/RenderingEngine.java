@@ -0,0 +1,270 @@
+package cz.czeckout.fop;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.apache.fop.Version;
+import org.apache.fop.apps.FOPException;
+import org.apache.fop.apps.Fop;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.FopFactoryBuilder;
+import org.apache.fop.apps.MimeConstants;
+import org.apache.fop.configuration.Configuration;
+import org.apache.fop.configuration.ConfigurationException;
+import org.apache.fop.configuration.DefaultConfigurationBuilder;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.google.zxing.common.BitMatrix;
+import cz.czeckout.CodeVersion;
+import cz.czeckout.Digests;
+import cz.czeckout.generator.QRCache;
+
+/**
+ * Long-lived PDF rendering setup, built once per process: the FOP factory with its configuration and fonts, and the
+ * compiled layout. Both are thread-safe, every rendering only takes its own {@link Fop} and {@link Transformer}.
+ * <p>
+ * The layout is compiled on its first use. {@link #preload()} moves the compilation and the loading of FOP to a
+ * background thread, where they overlap with the work preceding the first PDF.
+ */
+public final class RenderingEngine {
+
+    public static final String SINGLE_LAYOUT = "invoice-single-layout.xsl";
+
+    private static final String CONFIGURATION = "fop.xconf";
+
+    /**
+     * Smallest document using the configured font faces, rendered once to load FOP and the fonts before the first
+     * invoice.
+     */
+    private static final String WARM_UP_DOCUMENT = """
+        <fo:root xmlns:fo="http://www.w3.org/1999/XSL/Format" font-family="Consolas">
+            <fo:layout-master-set>
+                <fo:simple-page-master master-name="A4" page-height="29.7cm" page-width="21cm">
+                    <fo:region-body/>
+                </fo:simple-page-master>
+            </fo:layout-master-set>
+            <fo:page-sequence master-reference="A4">
+                <fo:flow flow-name="xsl-region-body">
+                    <fo:block>0 <fo:inline font-weight="bold">0</fo:inline></fo:block>
+                </fo:flow>
+            </fo:page-sequence>
+        </fo:root>
+        """;
+
+    /**
+     * Compiled layout with the digest of its stylesheet and the imported ones.
+     */
+    private record Layout(@NonNull Templates templates, byte @NonNull [] digest) {
+    }
+
+    private final FopFactory fopFactory;
+
+    /**
+     * Matrices of the QR codes drawn by the {@code czq:qr} elements.
+     */
+    private final QRCache qrCache;
+
+    /**
+     * Digest of the FOP version, its configuration and the embedded fonts.
+     */
+    private final byte[] setupDigest;
+
+    /**
+     * Version of the rendering code, such as the drawing of the QR codes, and of FOP.
+     */
+    private final byte[] codeVersion;
+
+    private final FutureTask<Layout> singleLayout = new FutureTask<>(() -> compile(SINGLE_LAYOUT));
+
+    /**
+     * @param resourceDirectory directory with the FOP configuration, the QR codes are drawn from a cache of their own
+     */
+    public RenderingEngine(@NonNull final Path resourceDirectory) throws ConfigurationException, IOException {
+        this(resourceDirectory, new QRCache(256));
+    }
+
+    /**
+     * @param resourceDirectory directory with the FOP configuration, the fonts are resolved against it
+     * @param qrCache           cache the QR codes are drawn from, shared with the encoding of the invoices so that no
+     *                          payload is encoded twice
+     */
+    public RenderingEngine(@NonNull final Path resourceDirectory,
+                           @NonNull final QRCache qrCache) throws ConfigurationException, IOException {
+        final var configurationFile = resourceDirectory.resolve(CONFIGURATION);
+        final var configuration = new DefaultConfigurationBuilder().buildFromFile(configurationFile.toFile());
+        this.fopFactory = new FopFactoryBuilder(resourceDirectory.toUri())
+            .setConfiguration(configuration)
+            .build();
+        this.setupDigest = digestSetup(resourceDirectory, configurationFile, configuration);
+        this.codeVersion = CodeVersion.of(RenderingEngine.class, QRCache.class, BitMatrix.class, Fop.class)
+            .getBytes(StandardCharsets.US_ASCII);
+        this.qrCache = qrCache;
+    }
+
+    /**
+     * @return digest of everything the PDFs depend on besides the rendered document and the layout parameters: the
+     * layout with its imports, the FOP version, configuration and fonts, and the rendering code
+     */
+    @NonNull
+    public String getVersion() throws TransformerConfigurationException {
+        final var digest = Digests.newDigest();
+        Digests.update(digest, codeVersion);
+        Digests.update(digest, setupDigest);
+        Digests.update(digest, get(singleLayout).digest());
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Compiles the single layout and {@linkplain #warmUp() warms up} FOP on a daemon thread and returns immediately.
+     * A failed compilation is thrown by {@link #newSingleTransformer()}, a failed warm-up is only reported, the first
+     * invoice fails the same way.
+     */
+    public void preload() {
+        final var preloading = new Thread(() -> {
+            singleLayout.run();
+            try {
+                warmUp();
+            } catch (FOPException | TransformerException e) {
+                System.out.println("Warm-up of FOP failed: " + e.getMessage());
+            }
+        }, "rendering-preload");
+        preloading.setDaemon(true);
+        preloading.start();
+    }
+
+    /**
+     * Renders a minimal document, so that the first invoice does not pay for loading the fonts and the rendering code.
+     * A broken font configuration fails here instead of on the first invoice.
+     */
+    public void warmUp() throws FOPException, TransformerException {
+        final var fop = newPdf(OutputStream.nullOutputStream());
+        createTransformerFactory(null).newTransformer()
+            .transform(new StreamSource(new StringReader(WARM_UP_DOCUMENT)), new SAXResult(fop.getDefaultHandler()));
+    }
+
+    /**
+     * @return renderer of a single PDF into the stream, its user agent carries the QR cache
+     */
+    @NonNull
+    public Fop newPdf(@NonNull final OutputStream out) throws FOPException {
+        final var userAgent = fopFactory.newFOUserAgent();
+        userAgent.getRendererOptions().put(QRElementMapping.QR_CACHE_OPTION, qrCache);
+        return fopFactory.newFop(MimeConstants.MIME_PDF, userAgent, out);
+    }
+
+    /**
+     * @return transformer of a single {@code invoice} element, not to be shared by threads
+     */
+    @NonNull
+    public Transformer newSingleTransformer() throws TransformerConfigurationException {
+        return get(singleLayout).templates().newTransformer();
+    }
+
+    /**
+     * @return the compiled layout, compiled by the calling thread unless another one already does it
+     */
+    @NonNull
+    private static Layout get(@NonNull final FutureTask<Layout> layout)
+        throws TransformerConfigurationException {
+        // No-op once the compilation has started
+        layout.run();
+        try {
+            return layout.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransformerConfigurationException("Interrupted while compiling the layout", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TransformerConfigurationException tce) {
+                throw tce;
+            }
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new TransformerConfigurationException(e.getCause());
+        }
+    }
+
+    @NonNull
+    private static Layout compile(@NonNull final String layout)
+        throws TransformerConfigurationException, IOException {
+        final byte[] xsl;
+        try (var in = RenderingEngine.class.getClassLoader().getResourceAsStream(layout)) {
+            if (in == null) {
+                throw new IllegalStateException("XSL " + layout + " missing");
+            }
+            xsl = in.readAllBytes();
+        }
+        final var digest = Digests.newDigest();
+        Digests.update(digest, xsl);
+        final var templates = createTransformerFactory(digest)
+            .newTemplates(new StreamSource(new ByteArrayInputStream(xsl)));
+        return new Layout(templates, digest.digest());
+    }
+
+    /**
+     * @param imports digest updated by every imported stylesheet, if any
+     */
+    @NonNull
+    private static TransformerFactory createTransformerFactory(@Nullable final MessageDigest imports) {
+        // Force Saxon HE for XSLT 2.0 support.
+        final var tf = new net.sf.saxon.TransformerFactoryImpl();
+        // When you see a href, look in the resources folder... so the imports in XSLT can be relative from their location.
+        tf.setURIResolver((href, base) -> {
+            try (InputStream is = RenderingEngine.class.getClassLoader().getResourceAsStream(href)) {
+                if (is == null) {
+                    return null;
+                }
+                final var xsl = is.readAllBytes();
+                if (imports != null) {
+                    Digests.update(imports, href);
+                    Digests.update(imports, xsl);
+                }
+                return new StreamSource(new ByteArrayInputStream(xsl));
+            } catch (IOException e) {
+                throw new TransformerException("Cannot read XSL " + href, e);
+            }
+        });
+        return tf;
+    }
+
+    private static byte @NonNull [] digestSetup(@NonNull final Path resourceDirectory,
+                                                @NonNull final Path configurationFile,
+                                                @NonNull final Configuration configuration) throws IOException {
+        final var digest = Digests.newDigest();
+        Digests.update(digest, String.valueOf(Version.getVersion()));
+        Digests.update(digest, Files.readAllBytes(configurationFile));
+        for (var renderer : configuration.getChild("renderers").getChildren("renderer")) {
+            for (var font : renderer.getChild("fonts").getChildren("font")) {
+                final var embedUrl = font.getAttribute("embed-url", null);
+                if (embedUrl == null) {
+                    continue;
+                }
+                Digests.update(digest, embedUrl);
+                final var fontUri = resourceDirectory.toUri().resolve(embedUrl);
+                if ("file".equals(fontUri.getScheme())) {
+                    Digests.update(digest, Files.readAllBytes(Path.of(fontUri)));
+                }
+            }
+        }
+        return digest.digest();
+    }
+}
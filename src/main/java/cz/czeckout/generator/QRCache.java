@@ -0,0 +1,97 @@
+package cz.czeckout.generator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Bounded cache of encoded QR codes by payload, evicting the least recently used ones. Recurring invoices with the
+ * same account, amount and symbols share the payload, so they are encoded and rendered only once.
+ * <p>
+ * The cache is thread-safe. Payloads are encoded outside the lock, so a payload missed by two threads at the same
+ * time may be encoded twice, but the workers never wait for each other's encoding.
+ */
+public final class QRCache {
+
+    /**
+     * Encoded payload with its rendered SVG. The matrix is shared by all users of the cache and must not be modified.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static final class Entry {
+
+        @NonNull
+        private final BitMatrix matrix;
+
+        @NonNull
+        private final String svg;
+    }
+
+    private final int maxSize;
+    private final Map<String, Entry> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public QRCache(final int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+                return size() > QRCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * @return cached entry of the payload, encoded and rendered first if it is not cached
+     */
+    @NonNull
+    public Entry get(@NonNull final String payload) throws WriterException {
+        synchronized (entries) {
+            final var entry = entries.get(payload);
+            if (entry != null) {
+                hits.increment();
+                return entry;
+            }
+        }
+        misses.increment();
+
+        final var matrix = QREncoder.encode(payload);
+        final var entry = new Entry(matrix, QRSvgRenderer.render(matrix));
+        synchronized (entries) {
+            entries.put(payload, entry);
+        }
+        return entry;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "QRCache[size=" + size() + "/" + maxSize + ", hits=" + getHits() + ", misses=" + getMisses() + "]";
+    }
+}
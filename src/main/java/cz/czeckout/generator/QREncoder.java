@@ -0,0 +1,35 @@
+package cz.czeckout.generator;
+
+import java.util.Map;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+
+/**
+ * Encodes QR payloads into module matrices. A payload is meant to be encoded once, all the outputs (the embedded SVG,
+ * the picture files) are then written from the same matrix.
+ */
+public final class QREncoder {
+
+    private static final Map<EncodeHintType, Object> HINTS = Map.of(
+        EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.M,
+        EncodeHintType.CHARACTER_SET, "UTF-8",
+        EncodeHintType.MARGIN, 0);
+
+    private QREncoder() {
+    }
+
+    /**
+     * @return matrix of the modules without any quiet zone, one element per module
+     */
+    @NonNull
+    public static BitMatrix encode(@NonNull final String payload) throws WriterException {
+        return new QRCodeWriter().encode(payload, BarcodeFormat.QR_CODE, 0, 0, HINTS);
+    }
+}
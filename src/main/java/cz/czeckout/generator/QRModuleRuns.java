@@ -0,0 +1,52 @@
+package cz.czeckout.generator;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import com.google.zxing.common.BitMatrix;
+
+/**
+ * Horizontal runs of dark modules in a QR matrix, the unit all the QR outputs are drawn by.
+ */
+public final class QRModuleRuns {
+
+    @FunctionalInterface
+    public interface RunConsumer {
+
+        /**
+         * @param x      column of the first module of the run
+         * @param y      row of the run
+         * @param length number of the modules in the run
+         */
+        void accept(int x, int y, int length);
+    }
+
+    private QRModuleRuns() {
+    }
+
+    /**
+     * Passes the runs row by row, from left to right within a row.
+     */
+    public static void forEach(@NonNull final BitMatrix matrix, @NonNull final RunConsumer consumer) {
+        final var width = matrix.getWidth();
+        for (int y = 0; y < matrix.getHeight(); y++) {
+            var x = 0;
+            while (x < width) {
+                if (!matrix.get(x, y)) {
+                    x++;
+                    continue;
+                }
+                final var start = x;
+                while (x < width && matrix.get(x, y)) {
+                    x++;
+                }
+                consumer.accept(start, y, x - start);
+            }
+        }
+    }
+
+    public static int count(@NonNull final BitMatrix matrix) {
+        final var runs = new int[1];
+        forEach(matrix, (x, y, length) -> runs[0]++);
+        return runs[0];
+    }
+}
@@ -0,0 +1,76 @@
+package cz.czeckout.generator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import com.google.zxing.common.BitMatrix;
+
+/**
+ * Renders a QR matrix as a compact SVG. The dark modules of each row are merged into horizontal runs, and all runs
+ * are drawn by a single {@code <path>}, so the size of the SVG grows with the number of runs instead of the number of
+ * modules.
+ * <p>
+ * Each run is a filled rectangle one module high, such as {@code M4 2h5v1h-5z}. Closing a rectangle returns to its
+ * top left corner, so the runs following another one in the same row are moved to relatively, such as
+ * {@code m7 0h2v1h-2z}.
+ */
+public final class QRSvgRenderer {
+
+    /**
+     * Rough length of a single run in the path data, such as {@code m7 0h5v1h-5z}.
+     */
+    private static final int RUN_LENGTH_ESTIMATE = 14;
+
+    private static final int FRAME_LENGTH_ESTIMATE = 256;
+
+    private QRSvgRenderer() {
+    }
+
+    @NonNull
+    public static String render(@NonNull final BitMatrix matrix) {
+        final var svg = new StringBuilder(FRAME_LENGTH_ESTIMATE + QRModuleRuns.count(matrix) * RUN_LENGTH_ESTIMATE);
+        render(matrix, svg);
+        return svg.toString();
+    }
+
+    /**
+     * Writes the rendered SVG as a standalone picture file.
+     */
+    public static void write(@NonNull final String svg, @NonNull final Path path) throws IOException {
+        try (var out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            out.write(svg);
+        }
+    }
+
+    public static void render(@NonNull final BitMatrix matrix, @NonNull final StringBuilder svg) {
+        final var width = matrix.getWidth();
+        final var height = matrix.getHeight();
+
+        svg.append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"").append(width)
+            .append("\" height=\"").append(height)
+            .append("\" viewBox=\"0 0 ").append(width).append(' ').append(height)
+            .append("\" shape-rendering=\"crispEdges\">");
+        svg.append("<rect width=\"100%\" height=\"100%\" fill=\"white\"/>"); // white background
+        svg.append("<path fill=\"black\" d=\"");
+
+        // Row and start of the previous run, where the pen is left
+        final var previous = new int[] {-1, 0};
+        QRModuleRuns.forEach(matrix, (x, y, length) -> {
+            if (y != previous[0]) {
+                svg.append('M').append(x).append(' ').append(y);
+            } else {
+                svg.append('m').append(x - previous[1]).append(" 0");
+            }
+            svg.append('h').append(length).append("v1h-").append(length).append('z');
+            previous[0] = y;
+            previous[1] = x;
+        });
+
+        svg.append("\"/></svg>");
+    }
+}
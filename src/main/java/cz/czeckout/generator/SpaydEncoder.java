@@ -0,0 +1,235 @@
+package cz.czeckout.generator;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import cz.czeckout.entity.Account;
+import cz.czeckout.entity.Invoice;
+
+/**
+ * Encodes payment details into SPAYD (Short Payment Descriptor) payloads, the QR payment format of the Czech banking
+ * association:
+ * <pre>{@code
+ * SPD*1.0*ACC:CZ7908000000002000145399*AM:2240.62*CC:CZK*MSG:Faktura 1*DT:20240214*X-VS:1000*X-KS:0308
+ * }</pre>
+ * The values are normalized to what the banking apps read reliably: diacritics are removed and the {@code *}
+ * separator is escaped as {@code %2A}. Values breaking the limits of the format are fitted into them with a warning:
+ * the amount is rounded to hellers, the message is cut to its maximal length, the symbols are stripped of everything
+ * but digits, and the values that cannot be fitted, such as a negative amount of a credit note, are left out. Only the
+ * payloads not fitting into a QR code are rejected by {@link IllegalArgumentException}.
+ * <p>
+ * The encoder writes every payload into the same builder, so an instance must not be shared by multiple threads.
+ */
+public final class SpaydEncoder {
+
+    /**
+     * Capacity of the largest QR code (version 40) at the error correction level M in the byte mode, less the UTF-8
+     * designator, see {@link QREncoder}.
+     */
+    public static final int MAX_PAYLOAD_BYTES = 2330;
+
+    private static final String HEADER = "SPD*1.0";
+
+    private static final String CURRENCY = "CZK";
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private static final Pattern NON_DIGITS = Pattern.compile("[^0-9]+");
+
+    // Maximal lengths of the values by the specification, the IBANs are never longer than the account limit
+    private static final int MAX_AMOUNT_LENGTH = 10;
+    private static final int MAX_AMOUNT_SCALE = 2;
+    private static final int MAX_MESSAGE_LENGTH = 60;
+    private static final int MAX_SYMBOL_LENGTH = 10;
+
+    private final StringBuilder payload = new StringBuilder(128);
+
+    /**
+     * Name of the invoice being encoded, for the warnings, {@code null} if the details are not of an invoice.
+     */
+    @Nullable
+    private String invoiceName;
+
+    /**
+     * @return payload of the given payment details, the blank ones are left out
+     */
+    @NonNull
+    public String encode(@NonNull final Account account,
+                         @Nullable final BigDecimal amount,
+                         @Nullable final String message,
+                         @Nullable final LocalDate dueDate,
+                         @Nullable final String vs,
+                         @Nullable final String ss,
+                         @Nullable final String ks) {
+        payload.setLength(0);
+        payload.append(HEADER);
+
+        if (StringUtils.isNotBlank(account.getRawIban())) {
+            appendValue("ACC", normalize(account.getRawIban()));
+        }
+        if (amount != null) {
+            appendAmount(amount);
+        }
+        if (StringUtils.isNotBlank(message)) {
+            appendMessage(message);
+        }
+        if (dueDate != null) {
+            payload.append("*DT:");
+            DATE_FORMAT.formatTo(dueDate, payload);
+        }
+        appendSymbol("X-VS", vs);
+        appendSymbol("X-SS", ss);
+        appendSymbol("X-KS", ks);
+
+        final var bytes = utf8Length(payload);
+        if (bytes > MAX_PAYLOAD_BYTES) {
+            throw new IllegalArgumentException(
+                "SPAYD payload has %d bytes, a QR code holds at most %d".formatted(bytes, MAX_PAYLOAD_BYTES));
+        }
+        return payload.toString();
+    }
+
+    /**
+     * @return payload of the invoice, paying the total price of its items
+     */
+    @NonNull
+    public String encode(@NonNull final Invoice invoice) {
+        invoiceName = invoice.getName();
+        try {
+            return encode(invoice.getAccount(), invoice.getTotalAmount(), invoice.getMessage(), invoice.getDueDate(),
+                invoice.getVs(), invoice.getSs(), invoice.getKs());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invoice " + invoice.getName() + ": " + e.getMessage(), e);
+        } finally {
+            invoiceName = null;
+        }
+    }
+
+    /**
+     * @return payloads of the invoices in their order
+     */
+    @NonNull
+    public List<String> encodeAll(@NonNull final List<Invoice> invoices) {
+        final var payloads = new ArrayList<String>(invoices.size());
+        for (var invoice : invoices) {
+            payloads.add(encode(invoice));
+        }
+        return payloads;
+    }
+
+    private void appendAmount(@NonNull final BigDecimal amount) {
+        if (amount.signum() < 0) {
+            warn("AM left out, a negative amount cannot be paid: " + amount);
+            return;
+        }
+        final var rounded = amount.scale() > MAX_AMOUNT_SCALE
+            ? amount.setScale(MAX_AMOUNT_SCALE, RoundingMode.HALF_UP)
+            : amount;
+        final var plain = rounded.toPlainString();
+        if (plain.length() > MAX_AMOUNT_LENGTH) {
+            warn("AM left out, longer than %d characters: %s".formatted(MAX_AMOUNT_LENGTH, plain));
+            return;
+        }
+        appendValue("AM", plain);
+        payload.append("*CC:").append(CURRENCY);
+    }
+
+    private void appendMessage(@NonNull final String message) {
+        var normalized = normalize(message);
+        if (normalized.length() > MAX_MESSAGE_LENGTH) {
+            warn("MSG cut to %d characters: %s".formatted(MAX_MESSAGE_LENGTH, message));
+            normalized = normalized.substring(0, MAX_MESSAGE_LENGTH);
+        }
+        appendValue("MSG", normalized);
+    }
+
+    private void appendSymbol(@NonNull final String key, @Nullable final String symbol) {
+        if (StringUtils.isBlank(symbol)) {
+            return;
+        }
+        var digits = symbol;
+        if (!isDigits(symbol)) {
+            digits = NON_DIGITS.matcher(symbol).replaceAll("");
+            warn("%s stripped of the characters other than digits: %s".formatted(key, symbol));
+        }
+        if (digits.isEmpty()) {
+            return;
+        }
+        if (digits.length() > MAX_SYMBOL_LENGTH) {
+            // Cut, it would be another symbol
+            warn("%s left out, longer than %d digits: %s".formatted(key, MAX_SYMBOL_LENGTH, symbol));
+            return;
+        }
+        appendValue(key, digits);
+    }
+
+    /**
+     * Appends the normalized value, escaping the separators in it.
+     */
+    private void appendValue(@NonNull final String key, @NonNull final String value) {
+        payload.append('*').append(key).append(':');
+        for (int i = 0; i < value.length(); i++) {
+            final var c = value.charAt(i);
+            if (c == '*') {
+                payload.append("%2A");
+            } else {
+                payload.append(c);
+            }
+        }
+    }
+
+    private void warn(@NonNull final String message) {
+        System.out.println(invoiceName != null
+            ? "SPAYD of invoice %s: %s".formatted(invoiceName, message)
+            : "SPAYD: " + message);
+    }
+
+    /**
+     * @return the value without diacritics, the plain ASCII values are returned as they are
+     */
+    @NonNull
+    private static String normalize(@NonNull final String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0x7F) {
+                return COMBINING_MARKS.matcher(Normalizer.normalize(value, Normalizer.Form.NFD)).replaceAll("");
+            }
+        }
+        return value;
+    }
+
+    private static boolean isDigits(@NonNull final String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) < '0' || text.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int utf8Length(@NonNull final CharSequence text) {
+        var bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            final var c = text.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800 || Character.isSurrogate(c)) {
+                bytes += 2; // a surrogate pair is 4 bytes
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,366 @@
+package cz.czeckout.jackson;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.NamespaceSupport;
+
+/**
+ * StAX writer passing everything written to a SAX content handler, so that a document written by Jackson is read by
+ * the handler without being serialized into text and parsed again.
+ * <p>
+ * StAX writes the attributes and namespaces after the start of their element, so the start of an element is held
+ * until its content or end is written. The namespaces of the elements and attributes are declared when not in scope,
+ * as by a repairing writer, since Jackson writes {@code xsi:nil} without declaring its prefix. The document is started
+ * and ended once, however many times it is written.
+ * Comments, processing instructions and DTDs have no use in the rendered documents and are dropped.
+ */
+final class ContentHandlerStreamWriter implements XMLStreamWriter {
+
+    private record Element(@NonNull String uri, @NonNull String localName, @NonNull String qName,
+                           @NonNull List<String> prefixes) {
+    }
+
+    private final ContentHandler handler;
+
+    /**
+     * Namespaces declared by the elements passed to the handler.
+     */
+    private final NamespaceSupport namespaces = new NamespaceSupport();
+
+    /**
+     * Prefixes bound by {@link #setPrefix(String, String)} by their namespace, declared only once used.
+     */
+    private final Map<String, String> boundPrefixes = new HashMap<>();
+
+    private final ArrayDeque<Element> elements = new ArrayDeque<>();
+
+    private final AttributesImpl attributes = new AttributesImpl();
+
+    /**
+     * Element whose start has not been passed to the handler yet, {@code null} if there is none.
+     */
+    @Nullable
+    private Element pending;
+
+    /**
+     * Whether the pending element is an empty one, ended right after its start.
+     */
+    private boolean pendingEmpty;
+
+    private boolean documentStarted;
+
+    private boolean documentEnded;
+
+    ContentHandlerStreamWriter(@NonNull final ContentHandler handler) {
+        this.handler = handler;
+        namespaces.pushContext();
+    }
+
+    @Override
+    public void writeStartDocument() throws XMLStreamException {
+        if (documentStarted) {
+            return;
+        }
+        documentStarted = true;
+        try {
+            handler.startDocument();
+        } catch (SAXException e) {
+            throw new XMLStreamException(e);
+        }
+    }
+
+    @Override
+    public void writeStartDocument(final String version) throws XMLStreamException {
+        writeStartDocument();
+    }
+
+    @Override
+    public void writeStartDocument(final String encoding, final String version) throws XMLStreamException {
+        writeStartDocument();
+    }
+
+    @Override
+    public void writeEndDocument() throws XMLStreamException {
+        if (documentEnded) {
+            return;
+        }
+        documentEnded = true;
+        flushPending();
+        while (!elements.isEmpty()) {
+            writeEndElement();
+        }
+        try {
+            handler.endDocument();
+        } catch (SAXException e) {
+            throw new XMLStreamException(e);
+        }
+    }
+
+    @Override
+    public void writeStartElement(final String localName) throws XMLStreamException {
+        writeStartElement(XMLConstants.DEFAULT_NS_PREFIX, localName, XMLConstants.NULL_NS_URI);
+    }
+
+    @Override
+    public void writeStartElement(final String namespaceURI, final String localName) throws XMLStreamException {
+        final var prefix = getPrefix(namespaceURI);
+        writeStartElement(prefix != null ? prefix : XMLConstants.DEFAULT_NS_PREFIX, localName, namespaceURI);
+    }
+
+    @Override
+    public void writeStartElement(final String prefix, final String localName, final String namespaceURI)
+        throws XMLStreamException {
+        startElement(prefix, localName, namespaceURI, false);
+    }
+
+    @Override
+    public void writeEmptyElement(final String localName) throws XMLStreamException {
+        writeEmptyElement(XMLConstants.DEFAULT_NS_PREFIX, localName, XMLConstants.NULL_NS_URI);
+    }
+
+    @Override
+    public void writeEmptyElement(final String namespaceURI, final String localName) throws XMLStreamException {
+        final var prefix = getPrefix(namespaceURI);
+        writeEmptyElement(prefix != null ? prefix : XMLConstants.DEFAULT_NS_PREFIX, localName, namespaceURI);
+    }
+
+    @Override
+    public void writeEmptyElement(final String prefix, final String localName, final String namespaceURI)
+        throws XMLStreamException {
+        startElement(prefix, localName, namespaceURI, true);
+    }
+
+    private void startElement(@Nullable final String prefix,
+                              @NonNull final String localName,
+                              @Nullable final String namespaceURI,
+                              final boolean empty) throws XMLStreamException {
+        flushPending();
+        namespaces.pushContext();
+        pending = new Element(
+            namespaceURI != null ? namespaceURI : XMLConstants.NULL_NS_URI,
+            localName,
+            qualify(prefix, localName),
+            new ArrayList<>());
+        pendingEmpty = empty;
+        declare(prefix, pending.uri());
+    }
+
+    @Override
+    public void writeEndElement() throws XMLStreamException {
+        flushPending();
+        final var element = elements.pop();
+        endElement(element);
+    }
+
+    @Override
+    public void writeAttribute(final String localName, final String value) throws XMLStreamException {
+        writeAttribute(XMLConstants.DEFAULT_NS_PREFIX, XMLConstants.NULL_NS_URI, localName, value);
+    }
+
+    @Override
+    public void writeAttribute(final String namespaceURI, final String localName, final String value)
+        throws XMLStreamException {
+        final var prefix = getPrefix(namespaceURI);
+        writeAttribute(prefix != null ? prefix : XMLConstants.DEFAULT_NS_PREFIX, namespaceURI, localName, value);
+    }
+
+    @Override
+    public void writeAttribute(final String prefix, final String namespaceURI, final String localName,
+                               final String value) throws XMLStreamException {
+        if (pending == null) {
+            throw new XMLStreamException("Attribute " + localName + " written outside of a start element");
+        }
+        final var uri = namespaceURI != null ? namespaceURI : XMLConstants.NULL_NS_URI;
+        // Unprefixed attributes are in no namespace, the default one does not apply to them
+        if (prefix != null && !prefix.isEmpty()) {
+            declare(prefix, uri);
+        }
+        attributes.addAttribute(uri, localName, qualify(prefix, localName), "CDATA", value);
+    }
+
+    @Override
+    public void writeNamespace(final String prefix, final String namespaceURI) throws XMLStreamException {
+        if (pending == null) {
+            throw new XMLStreamException("Namespace " + namespaceURI + " written outside of a start element");
+        }
+        declare(prefix, namespaceURI != null ? namespaceURI : XMLConstants.NULL_NS_URI);
+    }
+
+    /**
+     * Declares the prefix on the pending element unless it is already bound to the namespace.
+     */
+    private void declare(@Nullable final String prefix, @NonNull final String namespaceURI) {
+        final var declared = prefix != null ? prefix : XMLConstants.DEFAULT_NS_PREFIX;
+        final var current = namespaces.getURI(declared);
+        if (namespaceURI.equals(current != null ? current : XMLConstants.NULL_NS_URI)) {
+            return;
+        }
+        namespaces.declarePrefix(declared, namespaceURI);
+        pending.prefixes().add(declared);
+    }
+
+    @Override
+    public void writeDefaultNamespace(final String namespaceURI) throws XMLStreamException {
+        writeNamespace(XMLConstants.DEFAULT_NS_PREFIX, namespaceURI);
+    }
+
+    @Override
+    public void writeCharacters(final String text) throws XMLStreamException {
+        writeCharacters(text.toCharArray(), 0, text.length());
+    }
+
+    @Override
+    public void writeCharacters(final char[] text, final int start, final int len) throws XMLStreamException {
+        flushPending();
+        try {
+            handler.characters(text, start, len);
+        } catch (SAXException e) {
+            throw new XMLStreamException(e);
+        }
+    }
+
+    @Override
+    public void writeCData(final String data) throws XMLStreamException {
+        writeCharacters(data);
+    }
+
+    @Override
+    public void writeComment(final String data) throws XMLStreamException {
+        flushPending();
+    }
+
+    @Override
+    public void writeProcessingInstruction(final String target) throws XMLStreamException {
+        flushPending();
+    }
+
+    @Override
+    public void writeProcessingInstruction(final String target, final String data) throws XMLStreamException {
+        flushPending();
+    }
+
+    @Override
+    public void writeDTD(final String dtd) {
+    }
+
+    @Override
+    public void writeEntityRef(final String name) throws XMLStreamException {
+        throw new XMLStreamException("Entity references are not supported: " + name);
+    }
+
+    @Override
+    public String getPrefix(final String uri) {
+        final var declared = namespaces.getPrefix(uri);
+        return declared != null ? declared : boundPrefixes.get(uri);
+    }
+
+    @Override
+    public void setPrefix(final String prefix, final String uri) {
+        boundPrefixes.put(uri, prefix);
+    }
+
+    @Override
+    public void setDefaultNamespace(final String uri) {
+        setPrefix(XMLConstants.DEFAULT_NS_PREFIX, uri);
+    }
+
+    @Override
+    public void setNamespaceContext(final NamespaceContext context) throws XMLStreamException {
+        throw new XMLStreamException("Namespace context cannot be replaced");
+    }
+
+    @Override
+    public NamespaceContext getNamespaceContext() {
+        return new NamespaceContext() {
+            @Override
+            public String getNamespaceURI(final String prefix) {
+                final var uri = namespaces.getURI(prefix);
+                return uri != null ? uri : XMLConstants.NULL_NS_URI;
+            }
+
+            @Override
+            public String getPrefix(final String namespaceURI) {
+                return ContentHandlerStreamWriter.this.getPrefix(namespaceURI);
+            }
+
+            @Override
+            public Iterator<String> getPrefixes(final String namespaceURI) {
+                return namespaces.getPrefixes(namespaceURI).asIterator();
+            }
+        };
+    }
+
+    @Override
+    public Object getProperty(final String name) {
+        if (XMLOutputFactory.IS_REPAIRING_NAMESPACES.equals(name)) {
+            return Boolean.TRUE;
+        }
+        throw new IllegalArgumentException("Property not supported: " + name);
+    }
+
+    @Override
+    public void flush() throws XMLStreamException {
+        flushPending();
+    }
+
+    @Override
+    public void close() throws XMLStreamException {
+        flushPending();
+    }
+
+    private void flushPending() throws XMLStreamException {
+        if (pending == null) {
+            return;
+        }
+        final var element = pending;
+        pending = null;
+        try {
+            for (var prefix : element.prefixes()) {
+                handler.startPrefixMapping(prefix, namespaces.getURI(prefix));
+            }
+            handler.startElement(element.uri(), element.localName(), element.qName(), attributes);
+        } catch (SAXException e) {
+            throw new XMLStreamException(e);
+        }
+        attributes.clear();
+
+        if (pendingEmpty) {
+            endElement(element);
+        } else {
+            elements.push(element);
+        }
+    }
+
+    private void endElement(@NonNull final Element element) throws XMLStreamException {
+        try {
+            handler.endElement(element.uri(), element.localName(), element.qName());
+            for (var prefix : element.prefixes()) {
+                handler.endPrefixMapping(prefix);
+            }
+        } catch (SAXException e) {
+            throw new XMLStreamException(e);
+        }
+        namespaces.popContext();
+    }
+
+    @NonNull
+    private static String qualify(@Nullable final String prefix, @NonNull final String localName) {
+        return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+    }
+}
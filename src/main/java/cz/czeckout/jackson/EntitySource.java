@@ -0,0 +1,172 @@
+package cz.czeckout.jackson;
+
+import java.io.IOException;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.transform.sax.SAXSource;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.codehaus.stax2.ri.Stax2WriterAdapter;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.DTDHandler;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectWriter;
+import tools.jackson.dataformat.xml.XmlMapper;
+
+/**
+ * Source of an entity as it is serialized by an XML mapper. The transformer reads the entity as SAX events written
+ * straight by the mapper, the document is never serialized into bytes and parsed back.
+ * <p>
+ * Raw values are passed as text, the values with markup must be left out of the serialization.
+ */
+public final class EntitySource extends SAXSource {
+
+    /**
+     * @param writer writer of the mapper, with the root name and other settings of the serialization
+     */
+    public EntitySource(@NonNull final XmlMapper mapper, @NonNull final ObjectWriter writer, @NonNull final Object value) {
+        super(new EntityReader(mapper, writer, value), new InputSource());
+    }
+
+    /**
+     * Stax2 view of the writer, the generator writes the pre-encoded values such as the decimal numbers raw. There is
+     * no markup in them, they are passed as text.
+     */
+    private static final class RawTextStreamWriter extends Stax2WriterAdapter {
+
+        private RawTextStreamWriter(@NonNull final ContentHandlerStreamWriter writer) {
+            super(writer);
+        }
+
+        @Override
+        public void writeRaw(final String text, final int offset, final int length) throws XMLStreamException {
+            mDelegate.writeCharacters(text.substring(offset, offset + length));
+        }
+
+        @Override
+        public void writeRaw(final char[] text, final int offset, final int length) throws XMLStreamException {
+            mDelegate.writeCharacters(text, offset, length);
+        }
+    }
+
+    /**
+     * Reader "parsing" the entity by serializing it into its content handler, it can be read repeatedly.
+     */
+    private static final class EntityReader implements XMLReader {
+
+        private final XmlMapper mapper;
+        private final ObjectWriter writer;
+        private final Object value;
+
+        @Nullable
+        private ContentHandler contentHandler;
+        @Nullable
+        private DTDHandler dtdHandler;
+        @Nullable
+        private EntityResolver entityResolver;
+        @Nullable
+        private ErrorHandler errorHandler;
+
+        private EntityReader(@NonNull final XmlMapper mapper,
+                             @NonNull final ObjectWriter writer,
+                             @NonNull final Object value) {
+            this.mapper = mapper;
+            this.writer = writer;
+            this.value = value;
+        }
+
+        @Override
+        public void parse(final InputSource input) throws SAXException {
+            if (contentHandler == null) {
+                throw new SAXException("Content handler is not set");
+            }
+            final var streamWriter = new ContentHandlerStreamWriter(contentHandler);
+            try {
+                streamWriter.writeStartDocument();
+                try (var generator = mapper.createGenerator(new RawTextStreamWriter(streamWriter))) {
+                    writer.writeValue(generator, value);
+                }
+                streamWriter.writeEndDocument();
+            } catch (XMLStreamException | IOException | JacksonException e) {
+                // Failure of the handler, passed through the writer and the generator
+                for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                    if (cause instanceof SAXException saxException) {
+                        throw saxException;
+                    }
+                }
+                throw new SAXException("Cannot serialize " + value.getClass().getSimpleName(), e);
+            }
+        }
+
+        @Override
+        public void parse(final String systemId) throws SAXException {
+            parse(new InputSource(systemId));
+        }
+
+        @Override
+        public boolean getFeature(final String name) {
+            // The events are always namespace aware, without the declarations as attributes
+            return "http://xml.org/sax/features/namespaces".equals(name);
+        }
+
+        @Override
+        public void setFeature(final String name, final boolean value) {
+        }
+
+        @Override
+        public Object getProperty(final String name) {
+            return null;
+        }
+
+        @Override
+        public void setProperty(final String name, final Object value) {
+        }
+
+        @Override
+        public void setEntityResolver(final EntityResolver resolver) {
+            this.entityResolver = resolver;
+        }
+
+        @Override
+        public EntityResolver getEntityResolver() {
+            return entityResolver;
+        }
+
+        @Override
+        public void setDTDHandler(final DTDHandler handler) {
+            this.dtdHandler = handler;
+        }
+
+        @Override
+        public DTDHandler getDTDHandler() {
+            return dtdHandler;
+        }
+
+        @Override
+        public void setContentHandler(final ContentHandler handler) {
+            this.contentHandler = handler;
+        }
+
+        @Override
+        public ContentHandler getContentHandler() {
+            return contentHandler;
+        }
+
+        @Override
+        public void setErrorHandler(final ErrorHandler handler) {
+            this.errorHandler = handler;
+        }
+
+        @Override
+        public ErrorHandler getErrorHandler() {
+            return errorHandler;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package cz.czeckout.jackson;
+
+import java.io.IOException;
+
+import javax.xml.namespace.QName;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import cz.czeckout.entity.Invoice;
+import cz.czeckout.entity.Invoices;
+import cz.czeckout.output.OutputEntry;
+import cz.czeckout.output.OutputSink;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.core.StreamWriteFeature;
+import tools.jackson.databind.ObjectWriter;
+import tools.jackson.databind.SerializationFeature;
+import tools.jackson.databind.SequenceWriter;
+import tools.jackson.dataformat.xml.ser.ToXmlGenerator;
+
+/**
+ * Exports the invoices of a sheet into {@value #JSON_ENTRY} and {@value #XML_ENTRY} of its sink one invoice at a time,
+ * each written as soon as it is ready. The documents are the same as the serialized {@link Invoices}, but neither
+ * the documents nor the list of the invoices are held in memory.
+ * <p>
+ * The entries are committed once {@linkplain #finish() finished}, closing an unfinished exporter discards them, so a
+ * failed sheet never leaves documents behind that look complete.
+ */
+public final class InvoiceExporter implements AutoCloseable {
+
+    public static final String JSON_ENTRY = "invoices.json";
+
+    public static final String XML_ENTRY = "invoices.xml";
+
+    /**
+     * Names of the {@link Invoices} and its list of the invoices, the list is unwrapped in XML.
+     */
+    private static final String INVOICES = "invoices";
+
+    private static final String INVOICE = "invoice";
+
+    private final OutputEntry jsonEntry;
+
+    private final JsonGenerator jsonGenerator;
+
+    private final SequenceWriter jsonSequence;
+
+    private final OutputEntry xmlEntry;
+
+    private final JsonGenerator xmlGenerator;
+
+    private final SequenceWriter xmlSequence;
+
+    /**
+     * @param jsonWriter writer of the JSON mapper, indented or not
+     * @param xmlWriter writer of the XML mapper, indented or not
+     */
+    public InvoiceExporter(@NonNull final ObjectWriter jsonWriter,
+                           @NonNull final ObjectWriter xmlWriter,
+                           @NonNull final OutputSink sink) throws IOException {
+        final var json = streaming(jsonWriter);
+        final var xml = streaming(xmlWriter);
+        final var jsonEntry = sink.newEntry(JSON_ENTRY);
+        JsonGenerator jsonGenerator = null;
+        OutputEntry xmlEntry = null;
+        JsonGenerator xmlGenerator = null;
+        try {
+            jsonGenerator = json.createGenerator(jsonEntry);
+            jsonGenerator.writeStartObject();
+            jsonGenerator.writeName(INVOICES);
+            jsonGenerator.writeStartArray();
+            this.jsonSequence = json.writeValues(jsonGenerator);
+
+            xmlEntry = sink.newEntry(XML_ENTRY);
+            xmlGenerator = xml.createGenerator(xmlEntry);
+            ((ToXmlGenerator) xmlGenerator).setNextName(new QName(INVOICES));
+            xmlGenerator.writeStartObject();
+            this.xmlSequence = xml.writeValues(xmlGenerator);
+        } catch (IOException | RuntimeException e) {
+            // Discards both the uncommitted entries, whichever of them and their generators are open
+            discard(jsonGenerator, e);
+            discard(jsonEntry, e);
+            discard(xmlGenerator, e);
+            discard(xmlEntry, e);
+            throw e;
+        }
+        this.jsonEntry = jsonEntry;
+        this.jsonGenerator = jsonGenerator;
+        this.xmlEntry = xmlEntry;
+        this.xmlGenerator = xmlGenerator;
+    }
+
+    /**
+     * Appends the invoice to both the documents.
+     */
+    public void write(@NonNull final Invoice invoice) {
+        jsonSequence.write(invoice);
+        xmlGenerator.writeName(INVOICE);
+        xmlSequence.write(invoice);
+    }
+
+    /**
+     * Ends both the documents and commits their entries.
+     */
+    public void finish() {
+        jsonSequence.close();
+        jsonGenerator.writeEndArray();
+        jsonGenerator.writeEndObject();
+        jsonGenerator.flush();
+        xmlSequence.close();
+        xmlGenerator.writeEndObject();
+        xmlGenerator.flush();
+        jsonEntry.commit();
+        xmlEntry.commit();
+    }
+
+    /**
+     * Closes the entries, discarded unless finished.
+     */
+    @Override
+    public void close() {
+        try {
+            jsonGenerator.close();
+        } finally {
+            xmlGenerator.close();
+        }
+    }
+
+    private static void discard(@Nullable final AutoCloseable closeable, @NonNull final Exception failure) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+     * @return the writer leaving the flushing to the buffers of the entries, and the unfinished documents unended
+     */
+    @NonNull
+    private static ObjectWriter streaming(@NonNull final ObjectWriter writer) {
+        return writer
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+            .without(StreamWriteFeature.AUTO_CLOSE_CONTENT);
+    }
+}
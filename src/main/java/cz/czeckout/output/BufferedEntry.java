@@ -0,0 +1,140 @@
+package cz.czeckout.output;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Entry collected by its writer and handed over whole once committed and closed, so that the entries written at the
+ * same time do not interleave. The content is kept in memory up to the spill threshold, the rest of a larger entry is
+ * written into a temporary file, so the memory taken by an entry stays bounded. The checksum of the content is
+ * computed while it is written.
+ */
+final class BufferedEntry extends OutputEntry {
+
+    private static final int INITIAL_SIZE = 32 * 1024;
+
+    private static final int SPILL_BUFFER_SIZE = 64 * 1024;
+
+    @FunctionalInterface
+    interface Consumer {
+
+        void accept(@NonNull BufferedEntry entry) throws IOException;
+    }
+
+    private final Consumer consumer;
+
+    /**
+     * Size the content is spilled into a temporary file above, {@link Integer#MAX_VALUE} keeps it in memory.
+     */
+    private final int spillThreshold;
+
+    private final CRC32 crc = new CRC32();
+
+    private byte[] buffer = new byte[0];
+
+    private long size;
+
+    @Nullable
+    private Path spillFile;
+
+    @Nullable
+    private OutputStream spill;
+
+    private boolean closed;
+
+    BufferedEntry(final int spillThreshold, @NonNull final Consumer consumer) {
+        this.spillThreshold = spillThreshold;
+        this.consumer = consumer;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(final byte @NonNull [] bytes, final int offset, final int length) throws IOException {
+        if (closed) {
+            throw new IOException("Entry is closed");
+        }
+        crc.update(bytes, offset, length);
+        if (spill == null && size + length > spillThreshold) {
+            spillFile = Files.createTempFile("czeckout-entry", ".tmp");
+            spill = new BufferedOutputStream(Files.newOutputStream(spillFile), SPILL_BUFFER_SIZE);
+            spill.write(buffer, 0, (int) size);
+            buffer = null;
+        }
+        if (spill != null) {
+            spill.write(bytes, offset, length);
+        } else {
+            final var end = (int) size + length;
+            if (end > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(end, Math.max(INITIAL_SIZE, 2 * buffer.length)));
+            }
+            System.arraycopy(bytes, offset, buffer, (int) size, length);
+        }
+        size += length;
+    }
+
+    /**
+     * Hands the committed entry over and releases the content, only the first time, the writers such as Jackson close
+     * the stream on their own.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (spill != null) {
+                spill.close();
+            }
+            if (isCommitted()) {
+                consumer.accept(this);
+            }
+        } finally {
+            buffer = null;
+            if (spillFile != null) {
+                Files.deleteIfExists(spillFile);
+            }
+        }
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    long getCrc() {
+        return crc.getValue();
+    }
+
+    /**
+     * Copies the content, while the entry is being handed over.
+     */
+    void writeTo(@NonNull final OutputStream out) throws IOException {
+        if (spillFile != null) {
+            Files.copy(spillFile, out);
+        } else {
+            out.write(buffer, 0, (int) size);
+        }
+    }
+
+    /**
+     * @return copy of the content kept in memory, while the entry is being handed over
+     */
+    byte @NonNull [] toByteArray() {
+        if (spillFile != null) {
+            throw new IllegalStateException("Entry of " + size + " bytes is not kept in memory");
+        }
+        return Arrays.copyOf(buffer, (int) size);
+    }
+}
@@ -0,0 +1,92 @@
+package cz.czeckout.output;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * Every entry written straight into its own file of the directory, replacing the previous file of the same name. The
+ * file of a discarded entry is deleted.
+ */
+public final class DirectorySink implements OutputSink {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final class FileEntry extends OutputEntry {
+
+        private final Path file;
+
+        private final OutputStream out;
+
+        private boolean closed;
+
+        private FileEntry(@NonNull final Path file) throws IOException {
+            this.file = file;
+            this.out = new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE);
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            out.write(b);
+        }
+
+        @Override
+        public void write(final byte @NonNull [] bytes, final int offset, final int length) throws IOException {
+            out.write(bytes, offset, length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            var kept = false;
+            try {
+                out.close();
+                kept = isCommitted();
+            } finally {
+                if (!kept) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private final Path directory;
+
+    public DirectorySink(@NonNull final Path directory) throws IOException {
+        Files.createDirectories(directory);
+        this.directory = directory;
+    }
+
+    @NonNull
+    @Override
+    public OutputEntry newEntry(@NonNull final String name) throws IOException {
+        final var file = directory.resolve(name);
+        if (!directory.equals(file.getParent())) {
+            throw new IllegalArgumentException("Entry name must be a file name: " + name);
+        }
+        return new FileEntry(file);
+    }
+
+    @NonNull
+    @Override
+    public Path getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public void close() {
+        // Every file is closed with its entry
+    }
+}
@@ -0,0 +1,43 @@
+package cz.czeckout.output;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Committed entries kept in memory, for tests and for callers passing small files on by themselves. Every entry is held
+ * whole, so the sink is not meant for large entries such as a merged PDF of a large sheet.
+ */
+public final class MemorySink implements OutputSink {
+
+    private final Map<String, byte[]> entries = new ConcurrentSkipListMap<>();
+
+    @NonNull
+    @Override
+    public OutputEntry newEntry(@NonNull final String name) {
+        return new BufferedEntry(Integer.MAX_VALUE, entry -> entries.put(name, entry.toByteArray()));
+    }
+
+    /**
+     * @return content of the committed entry, {@code null} if there is none of the name
+     */
+    public byte @Nullable [] getEntry(@NonNull final String name) {
+        return entries.get(name);
+    }
+
+    /**
+     * @return contents of the committed entries by name, sorted by name
+     */
+    @NonNull
+    public Map<String, byte[]> getEntries() {
+        return Collections.unmodifiableMap(entries);
+    }
+
+    @Override
+    public void close() {
+        // Nothing to complete, the entries stay readable
+    }
+}
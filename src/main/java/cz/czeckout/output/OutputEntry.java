@@ -0,0 +1,30 @@
+package cz.czeckout.output;
+
+import java.io.OutputStream;
+
+/**
+ * Stream of an entry of an {@link OutputSink}. The entry is kept only if committed before its stream is closed, so a
+ * writer failing halfway never leaves a truncated entry behind:
+ * <pre>{@code
+ * try (var out = sink.newEntry(name)) {
+ *     writer.write(out);
+ *     out.commit();
+ * }
+ * }</pre>
+ */
+public abstract class OutputEntry extends OutputStream {
+
+    private boolean committed;
+
+    /**
+     * Marks the entry complete, it is kept once the stream is closed. The writers flushing their buffers when closed
+     * may still write until then.
+     */
+    public void commit() {
+        committed = true;
+    }
+
+    protected boolean isCommitted() {
+        return committed;
+    }
+}
@@ -0,0 +1,37 @@
+package cz.czeckout.output;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Destination of the files written for a sheet, the PDFs and the exports. Every file is written as a named entry
+ * through its own buffered stream and is kept only if {@linkplain OutputEntry#commit() committed} before the stream is
+ * closed. Entries may be written by several threads at the same time, each entry by a single one.
+ */
+public interface OutputSink extends Closeable {
+
+    /**
+     * @param name file name of the entry, unique within the sink
+     * @return stream of the entry, closing it completes the committed entry and discards the other one
+     */
+    @NonNull
+    OutputEntry newEntry(@NonNull String name) throws IOException;
+
+    /**
+     * @return directory the entries are written to as files, {@code null} if they are not
+     */
+    @Nullable
+    default Path getDirectory() {
+        return null;
+    }
+
+    /**
+     * Completes the sink, after all its entries are closed.
+     */
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,15 @@
+package cz.czeckout.output;
+
+import java.io.IOException;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * Opens the {@link OutputSink} of every sheet.
+ */
+@FunctionalInterface
+public interface OutputSinkFactory {
+
+    @NonNull
+    OutputSink open(@NonNull String sheetName) throws IOException;
+}
@@ -0,0 +1,85 @@
+package cz.czeckout.output;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * All the entries streamed into one ZIP archive, a single file instead of a file per entry. Every entry is collected by
+ * its writer and appended whole once committed and closed, so the concurrent writers wait for each other only while
+ * the finished entries are copied, and the discarded entries never reach the archive. The entries larger than the
+ * spill threshold are collected in temporary files, so neither a merged PDF nor the exports of a large sheet are held
+ * in memory. The PDFs are stored as they are, their content is compressed already, the other entries are deflated.
+ */
+public final class ZipSink implements OutputSink {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int SPILL_THRESHOLD = 1024 * 1024;
+
+    private final Path file;
+
+    private final ZipOutputStream zip;
+
+    private final int spillThreshold;
+
+    private boolean closed;
+
+    public ZipSink(@NonNull final Path file) throws IOException {
+        this(file, SPILL_THRESHOLD);
+    }
+
+    /**
+     * @param spillThreshold size of the entries above which they are collected in temporary files
+     */
+    ZipSink(@NonNull final Path file, final int spillThreshold) throws IOException {
+        if (spillThreshold < 0) {
+            throw new IllegalArgumentException("Spill threshold must not be negative: " + spillThreshold);
+        }
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        this.file = file;
+        this.zip = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE));
+        this.spillThreshold = spillThreshold;
+    }
+
+    @NonNull
+    @Override
+    public OutputEntry newEntry(@NonNull final String name) {
+        return new BufferedEntry(spillThreshold, entry -> append(name, entry));
+    }
+
+    private void append(@NonNull final String name, @NonNull final BufferedEntry content) throws IOException {
+        final var entry = new ZipEntry(name);
+        if (name.endsWith(".pdf")) {
+            // Checksummed by the writing thread while written
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(content.getSize());
+            entry.setCompressedSize(content.getSize());
+            entry.setCrc(content.getCrc());
+        }
+        synchronized (zip) {
+            if (closed) {
+                throw new IOException("ZIP " + file + " is closed, cannot append " + name);
+            }
+            zip.putNextEntry(entry);
+            content.writeTo(zip);
+            zip.closeEntry();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (zip) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            zip.close();
+        }
+    }
+}
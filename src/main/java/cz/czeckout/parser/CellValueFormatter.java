@@ -0,0 +1,23 @@
+package cz.czeckout.parser;
+
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+
+/**
+ * Formats raw numeric cell contents the same way as {@link ExcelCellReader#getCellStringValue}, i.e. dates as ISO
+ * dates and other numbers as plain decimals regardless of the cell number format.
+ */
+class CellValueFormatter extends DataFormatter {
+
+    @Override
+    public String formatRawCellContents(final double value,
+                                        final int formatIndex,
+                                        final String formatString,
+                                        final boolean use1904Windowing) {
+
+        if (DateUtil.isADateFormat(formatIndex, formatString) && DateUtil.isValidExcelDate(value)) {
+            return DateUtil.getLocalDateTime(value, use1904Windowing).toLocalDate().toString();
+        }
+        return ExcelCellReader.formatNumericValue(value);
+    }
+}
@@ -0,0 +1,124 @@
+package cz.czeckout.parser;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.Year;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Parses dates written as text without throwing and catching an exception for every format that does not match. The
+ * format is chosen by the shape of the text, and the format that matched last is tried first, as the values of a
+ * single column share the format.
+ * <p>
+ * Supported formats are {@code yyyy-MM-dd}, {@code MM-dd-yy} and {@code M/d/yyyy}. Like the smart resolving of
+ * {@link java.time.format.DateTimeFormatter}, days 29 to 31 beyond the end of the month resolve to its last day.
+ * Instances are not thread-safe, each column binding uses its own.
+ */
+final class DateColumnParser {
+
+    private enum Format {
+
+        ISO {
+            @Override
+            LocalDate parse(@NonNull final String text) {
+                // yyyy-MM-dd
+                if (text.length() != 10 || text.charAt(4) != '-' || text.charAt(7) != '-') {
+                    return null;
+                }
+                return toDate(digits(text, 0, 4), digits(text, 5, 7), digits(text, 8, 10));
+            }
+        },
+
+        US_SHORT {
+            @Override
+            LocalDate parse(@NonNull final String text) {
+                // MM-dd-yy
+                if (text.length() != 8 || text.charAt(2) != '-' || text.charAt(5) != '-') {
+                    return null;
+                }
+                final var year = digits(text, 6, 8);
+                return toDate(year < 0 ? year : 2000 + year, digits(text, 0, 2), digits(text, 3, 5));
+            }
+        },
+
+        US {
+            @Override
+            LocalDate parse(@NonNull final String text) {
+                // M/d/yyyy
+                final var firstSlash = text.indexOf('/');
+                final var secondSlash = text.indexOf('/', firstSlash + 1);
+                if (firstSlash < 1 || firstSlash > 2 || secondSlash - firstSlash < 2 || secondSlash - firstSlash > 3
+                    || text.length() - secondSlash != 5) {
+                    return null;
+                }
+                return toDate(
+                    digits(text, secondSlash + 1, text.length()),
+                    digits(text, 0, firstSlash),
+                    digits(text, firstSlash + 1, secondSlash));
+            }
+        };
+
+        /**
+         * @return parsed date or {@code null} if the text does not have the shape of this format
+         */
+        @Nullable
+        abstract LocalDate parse(@NonNull String text);
+    }
+
+    private Format lastFormat = Format.ISO;
+
+    /**
+     * @return parsed date, {@code null} if the value is blank or not a date in any of the supported formats
+     */
+    @Nullable
+    LocalDate parse(@Nullable final Object value) {
+        if (value instanceof LocalDate date) {
+            return date;
+        }
+        final var text = SheetRow.toText(value);
+        if (text == null || text.isBlank()) {
+            return null;
+        }
+
+        final var date = lastFormat.parse(text);
+        if (date != null) {
+            return date;
+        }
+        for (var format : Format.values()) {
+            if (format != lastFormat) {
+                final var otherDate = format.parse(text);
+                if (otherDate != null) {
+                    lastFormat = format;
+                    return otherDate;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return non-negative number or {@code -1} if there is a non-digit character in the range
+     */
+    private static int digits(@NonNull final String text, final int from, final int to) {
+        var number = 0;
+        for (int i = from; i < to; i++) {
+            final var c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            number = number * 10 + (c - '0');
+        }
+        return number;
+    }
+
+    @Nullable
+    private static LocalDate toDate(final int year, final int month, final int day) {
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31) {
+            return null;
+        }
+        final var monthLength = Month.of(month).length(Year.isLeap(year));
+        return LocalDate.of(year, month, Math.min(day, monthLength));
+    }
+}
@@ -0,0 +1,107 @@
+package cz.czeckout.parser;
+
+import java.math.BigDecimal;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * Hand-written scanner of decimal numbers written as text, such as {@code "1 234,50 CZK"}, {@code "1,234.50"} or
+ * {@code "21 %"}. Whitespace, apostrophes, currency and other non-numeric characters are skipped, so no intermediate
+ * strings are created for values fitting into 18 digits.
+ * <p>
+ * If both {@code '.'} and {@code ','} occur, the last one is the decimal separator and the other one groups thousands.
+ * A separator occurring more than once always groups thousands. A single {@code ','} is the decimal separator unless
+ * {@code commaGroupsThousands} is set and exactly three digits follow it ({@code "1,234"}).
+ */
+final class DecimalScanner {
+
+    private static final int MAX_LONG_DIGITS = 18;
+
+    private DecimalScanner() {
+    }
+
+    /**
+     * @throws NumberFormatException if the text contains no digits or the decimal separator occurs more than once
+     */
+    @NonNull
+    static BigDecimal parse(@NonNull final CharSequence text, final boolean commaGroupsThousands) {
+        final var length = text.length();
+
+        // First pass: locate the separators and digits
+        var negative = false;
+        var digits = 0;
+        var dots = 0;
+        var commas = 0;
+        var lastDot = -1;
+        var lastComma = -1;
+        var digitsAfterLastComma = 0;
+        for (int i = 0; i < length; i++) {
+            final var c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+                digitsAfterLastComma++;
+            } else if (c == '.') {
+                dots++;
+                lastDot = i;
+            } else if (c == ',') {
+                commas++;
+                lastComma = i;
+                digitsAfterLastComma = 0;
+            } else if (c == '-' && digits == 0) {
+                negative = true;
+            }
+        }
+
+        if (digits == 0) {
+            throw new NumberFormatException("No digits in: " + text);
+        }
+
+        final int decimalSeparator;
+        if (dots > 0 && commas > 0) {
+            decimalSeparator = Math.max(lastDot, lastComma);
+            if ((decimalSeparator == lastDot ? dots : commas) > 1) {
+                throw new NumberFormatException("Ambiguous decimal separator in: " + text);
+            }
+        } else if (dots == 1) {
+            decimalSeparator = lastDot;
+        } else if (commas == 1 && !(commaGroupsThousands && digitsAfterLastComma == 3)) {
+            decimalSeparator = lastComma;
+        } else {
+            decimalSeparator = -1;
+        }
+
+        // Second pass: accumulate the unscaled value
+        if (digits > MAX_LONG_DIGITS) {
+            return parseLarge(text, decimalSeparator, negative);
+        }
+        var unscaled = 0L;
+        var scale = 0;
+        for (int i = 0; i < length; i++) {
+            final var c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                unscaled = unscaled * 10 + (c - '0');
+                if (decimalSeparator >= 0 && i > decimalSeparator) {
+                    scale++;
+                }
+            }
+        }
+        return BigDecimal.valueOf(negative ? -unscaled : unscaled, scale);
+    }
+
+    @NonNull
+    private static BigDecimal parseLarge(@NonNull final CharSequence text, final int decimalSeparator, final boolean negative) {
+        final var normalized = new StringBuilder(text.length() + 1);
+        if (negative) {
+            normalized.append('-');
+        }
+        for (int i = 0; i < text.length(); i++) {
+            final var c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                normalized.append(c);
+            } else if (i == decimalSeparator) {
+                normalized.append('.');
+            }
+        }
+        return new BigDecimal(normalized.toString());
+    }
+}
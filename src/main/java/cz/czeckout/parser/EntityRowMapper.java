@@ -1,11 +1,7 @@
 package cz.czeckout.parser;
 
-import java.util.Map;
-
 import org.apache.poi.ss.usermodel.FormulaEvaluator;
-import org.apache.poi.ss.usermodel.Row;
 import org.checkerframework.checker.nullness.qual.NonNull;
-import org.checkerframework.checker.nullness.qual.Nullable;
 import org.iban4j.CountryCode;
 import org.iban4j.Iban;
 
@@ -23,94 +19,98 @@ public class EntityRowMapper extends ExcelCellReader {
         super(evaluator);
     }
 
+    public EntityRowMapper(final FormulaEvaluator evaluator, @NonNull final FormulaEvaluationPolicy evaluationPolicy) {
+        super(evaluator, evaluationPolicy);
+    }
+
     @NonNull
-    public Invoice mapToInvoice(@NonNull final Row row,
-                               @NonNull final Map<String, Integer> headerMap,
-                               @NonNull final Metadata metadata) {
+    public RowBinding<Invoice> bindInvoice(@NonNull final SheetRow headerRow,
+                                           @NonNull final Metadata metadata) {
 
         final var parties = metadata.getParties();
         final var methods = metadata.getMethods();
         final var accounts = metadata.getAccounts();
 
-        final var invoice = new Invoice();
-        invoice.setName(getCellStringValue(row, headerMap.get("INVOICE")));
-        invoice.setIssuer(parties.get(getCellStringValue(row, headerMap.get("ISSUER"))));
-        invoice.setRecipient(parties.get(getCellStringValue(row, headerMap.get("RECIPIENT"))));
-        invoice.setIssueDate(parseDate(getCellStringValue(row, headerMap.get("ISSUE DATE"))));
-        invoice.setTaxDate(parseDate(getCellStringValue(row, headerMap.get("TAX DATE"))));
-        invoice.setDueDate(parseDate(getCellStringValue(row, headerMap.get("DUE DATE"))));
-        invoice.setMethod(methods.get(getCellStringValue(row, headerMap.get("METHOD"))));
-        invoice.setAccount(accounts.get(getCellStringValue(row, headerMap.get("ACCOUNT"))));
-        invoice.setVs(getCellStringValue(row, headerMap.get("VS")));
-        invoice.setKs(getCellStringValue(row, headerMap.get("KS")));
-        invoice.setSs(getCellStringValue(row, headerMap.get("SS")));
-        invoice.setMessage(getCellStringValue(row, headerMap.get("MESSAGE")));
-        invoice.setFlag(getCellStringValue(row, headerMap.get("FLAG")));
-        return invoice;
+        // Each date column remembers its own format
+        final var issueDates = new DateColumnParser();
+        final var taxDates = new DateColumnParser();
+        final var dueDates = new DateColumnParser();
+
+        return RowBinding.builder(Invoice::new)
+            .required("INVOICE", Invoice::setName)
+            .optional("ISSUER", (invoice, value) -> invoice.setIssuer(parties.get(value)))
+            .optional("RECIPIENT", (invoice, value) -> invoice.setRecipient(parties.get(value)))
+            .optionalValue("ISSUE DATE", (invoice, value) -> invoice.setIssueDate(issueDates.parse(value)))
+            .optionalValue("TAX DATE", (invoice, value) -> invoice.setTaxDate(taxDates.parse(value)))
+            .optionalValue("DUE DATE", (invoice, value) -> invoice.setDueDate(dueDates.parse(value)))
+            .optional("METHOD", (invoice, value) -> invoice.setMethod(methods.get(value)))
+            .optional("ACCOUNT", (invoice, value) -> invoice.setAccount(accounts.get(value)))
+            .optional("VS", Invoice::setVs)
+            .optional("KS", Invoice::setKs)
+            .optional("SS", Invoice::setSs)
+            .optional("MESSAGE", Invoice::setMessage)
+            .optional("FLAG", Invoice::setFlag)
+            .build(createHeaderMap(headerRow), headerLocation(headerRow));
     }
 
-    @Nullable
-    public Item mapToItem(@NonNull final Row row,
-                         @NonNull final Map<String, Integer> headerMap) {
-
-        final var name = getCellStringValue(row, headerMap.get("ITEM"));
-        if (name == null || name.isBlank()) {
-            return null;
-        }
-        
-        final var item = new Item();
-        item.setName(name);
-        item.setUnit(getCellStringValue(row, headerMap.get("UNIT")));
-        item.setQuantity(parseBigDecimal(row.getCell(headerMap.get("QUANTITY"))));
-        item.setUnitPrice(parseMonetaryValue(row.getCell(headerMap.get("UNIT PRICE"))));
-        item.setBasePrice(parseMonetaryValue(row.getCell(headerMap.get("BASE PRICE"))));
-        item.setVatRate(parseBigDecimal(row.getCell(headerMap.get("VAT RATE"))));
-        item.setVatPrice(parseMonetaryValue(row.getCell(headerMap.get("VAT"))));
-        item.setTotalPrice(parseMonetaryValue(row.getCell(headerMap.get("TOTAL PRICE"))));
-        return item;
+    /**
+     * Items are mapped only from rows with a non-blank ITEM column.
+     */
+    @NonNull
+    public RowBinding<Item> bindItem(@NonNull final SheetRow headerRow) {
+        return RowBinding.builder(Item::new)
+            .key("ITEM", Item::setName)
+            .optional("UNIT", Item::setUnit)
+            .requiredValue("QUANTITY", (item, value) -> item.setQuantity(parseBigDecimal(value)))
+            .requiredValue("UNIT PRICE", (item, value) -> item.setUnitPrice(parseMonetaryValue(value)))
+            .requiredValue("BASE PRICE", (item, value) -> item.setBasePrice(parseMonetaryValue(value)))
+            .requiredValue("VAT RATE", (item, value) -> item.setVatRate(parseBigDecimal(value)))
+            .requiredValue("VAT", (item, value) -> item.setVatPrice(parseMonetaryValue(value)))
+            .requiredValue("TOTAL PRICE", (item, value) -> item.setTotalPrice(parseMonetaryValue(value)))
+            .build(createHeaderMap(headerRow), headerLocation(headerRow));
     }
 
     @NonNull
-    public Party mapToParty(@NonNull final Row row,
-                           @NonNull final Map<String, Integer> headerMap) {
-
-        final var party = new Party();
-        party.setId(getCellStringValue(row, headerMap.get("ID")));
-        party.setName(getCellStringValue(row, headerMap.get("NAME")));
-        party.setIdentifierType(getCellStringValue(row, headerMap.get("IDENTIFIER TYPE")));
-        party.setIdentifier(getCellStringValue(row, headerMap.get("IDENTIFIER")));
-        party.setVatPrefix(getCellStringValue(row, headerMap.get("VAT PREFIX")));
-        party.setVat(getCellStringValue(row, headerMap.get("VAT")));
-        party.setAddressReference(getCellStringValue(row, headerMap.get("ADDRESS")));
-        return party;
+    public RowBinding<Party> bindParty(@NonNull final SheetRow headerRow) {
+        return RowBinding.builder(Party::new)
+            .required("ID", Party::setId)
+            .optional("NAME", Party::setName)
+            .optional("IDENTIFIER TYPE", Party::setIdentifierType)
+            .optional("IDENTIFIER", Party::setIdentifier)
+            .optional("VAT PREFIX", Party::setVatPrefix)
+            .optional("VAT", Party::setVat)
+            .optional("ADDRESS", Party::setAddressReference)
+            .build(createHeaderMap(headerRow), headerLocation(headerRow));
     }
 
     @NonNull
-    public Address mapToAddress(@NonNull final Row row,
-                               @NonNull final Map<String, Integer> headerMap) {
-
-        final var address = new Address();
-        address.setId(getCellStringValue(row, headerMap.get("ID")));
-        address.setStreet(getCellStringValue(row, headerMap.get("STREET")));
-        address.setHouseNumber(getCellStringValue(row, headerMap.get("HOUSE NUMBER")));
-        address.setCity(getCellStringValue(row, headerMap.get("CITY")));
-        address.setDistrict(getCellStringValue(row, headerMap.get("DISTRICT")));
-        address.setZipCode(getCellStringValue(row, headerMap.get("ZIP CODE")));
-        address.setCountry(getCellStringValue(row, headerMap.get("COUNTRY")));
-        return address;
+    public RowBinding<Address> bindAddress(@NonNull final SheetRow headerRow) {
+        return RowBinding.builder(Address::new)
+            .required("ID", Address::setId)
+            .optional("STREET", Address::setStreet)
+            .optional("HOUSE NUMBER", Address::setHouseNumber)
+            .optional("CITY", Address::setCity)
+            .optional("DISTRICT", Address::setDistrict)
+            .optional("ZIP CODE", Address::setZipCode)
+            .optional("COUNTRY", Address::setCountry)
+            .build(createHeaderMap(headerRow), headerLocation(headerRow));
     }
 
     @NonNull
-    public Account mapToAccount(@NonNull final Row row,
-                               @NonNull final Map<String, Integer> headerMap) {
-
-        final var account = new Account();
-        account.setId(getCellStringValue(row, headerMap.get("ID")));
-        account.setAccountNumber(getCellStringValue(row, headerMap.get("ACCOUNT NUMBER")));
-        account.setBankCode(getCellStringValue(row, headerMap.get("BANK CODE")));
-        account.setBankName(getCellStringValue(row, headerMap.get("BANK NAME")));
-        
-        // Generate IBAN from account details
+    public RowBinding<Account> bindAccount(@NonNull final SheetRow headerRow) {
+        return RowBinding.builder(Account::new)
+            .required("ID", Account::setId)
+            .required("ACCOUNT NUMBER", Account::setAccountNumber)
+            .required("BANK CODE", Account::setBankCode)
+            .optional("BANK NAME", Account::setBankName)
+            .afterMapping(EntityRowMapper::generateIban)
+            .build(createHeaderMap(headerRow), headerLocation(headerRow));
+    }
+
+    /**
+     * Generates the IBAN from the account details.
+     */
+    static void generateIban(@NonNull final Account account) {
         account.setIban(new Iban.Builder()
             .countryCode(CountryCode.CZ)
             .bankCode(account.getBankCode())
@@ -118,15 +118,18 @@ public class EntityRowMapper extends ExcelCellReader {
             .leftPadding(true)
             .build()
             .toFormattedString());
-        return account;
     }
 
     @NonNull
-    public Method mapToPaymentMethod(@NonNull final Row row,
-                                    @NonNull final Map<String, Integer> headerMap) {
-        final var method = new Method();
-        method.setId(getCellStringValue(row, headerMap.get("ID")));
-        method.setName(getCellStringValue(row, headerMap.get("NAME")));
-        return method;
+    public RowBinding<Method> bindPaymentMethod(@NonNull final SheetRow headerRow) {
+        return RowBinding.builder(Method::new)
+            .required("ID", Method::setId)
+            .optional("NAME", Method::setName)
+            .build(createHeaderMap(headerRow), headerLocation(headerRow));
+    }
+
+    @NonNull
+    private static String headerLocation(@NonNull final SheetRow headerRow) {
+        return headerRow.formatAddress(Math.max(headerRow.getFirstNonEmptyColumn(), 0));
     }
 }
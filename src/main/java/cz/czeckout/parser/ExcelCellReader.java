@@ -1,18 +1,16 @@
 package cz.czeckout.parser;
 
 import java.math.BigDecimal;
-import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.math.RoundingMode;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
 
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellType;
-import org.apache.poi.ss.usermodel.DataFormatter;
 import org.apache.poi.ss.usermodel.DateUtil;
 import org.apache.poi.ss.usermodel.FormulaEvaluator;
 import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.usermodel.XSSFCell;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.checker.units.qual.N;
@@ -22,69 +20,55 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public class ExcelCellReader {
 
-    private static final DataFormatter FORMATTER = new DataFormatter();
+    private final FormulaEvaluator evaluator;
 
-    private static final DateTimeFormatter[] DATE_FORMATS = new DateTimeFormatter[] {
-        DateTimeFormatter.ofPattern("yyyy-MM-dd"),
-        DateTimeFormatter.ofPattern("MM-dd-yy"),
-        DateTimeFormatter.ofPattern("M/d/yyyy")
-    };
+    @NonNull
+    private final FormulaEvaluationPolicy evaluationPolicy;
 
-    private final FormulaEvaluator evaluator;
+    public ExcelCellReader(final FormulaEvaluator evaluator) {
+        this(evaluator, FormulaEvaluationPolicy.ALWAYS);
+    }
 
     @NonNull
-    public Map<String, Integer> createHeaderMap(@NonNull final Row headerRow) {
+    public Map<String, Integer> createHeaderMap(@NonNull final SheetRow headerRow) {
         final var map = new HashMap<String, Integer>();
-        for (Cell cell : headerRow) {
-            String value = getCellStringValue(cell);
+        for (int columnIndex = 0; columnIndex < headerRow.getLastColumn(); columnIndex++) {
+            final var value = headerRow.get(columnIndex);
             if (value != null && !value.isBlank()) {
-                map.put(value.trim().toUpperCase(), cell.getColumnIndex());
+                map.put(value.trim().toUpperCase(), columnIndex);
             }
         }
         return map;
     }
 
-    @Nullable
-    public Row findNextNonEmptyRow(@NonNull final Iterator<Row> iterator) {
-        while (iterator.hasNext()) {
-            final var row = iterator.next();
-            if (!isRowEmpty(row)) {
-                return row;
-            }
-        }
-        return null;
-    }
-
-    public boolean isRowEmpty(@Nullable final Row row) {
-        if (row == null) {
-            return true;
-        }
-        for (var columnIndex = row.getFirstCellNum(); columnIndex < row.getLastCellNum(); columnIndex++) {
-            final var cell = row.getCell(columnIndex);
-            if (cell != null) {
-                final var value = FORMATTER.formatCellValue(cell);
-                if (!value.trim().isEmpty()) {
-                    return false;
-                }
-            }
-        }
-        return true;
-    }
-
-    @Nullable
-    public Cell getFirstNonEmptyCell(Row row) {
+    /**
+     * Decodes all cells of the row at once into typed values, so the row can be inspected and mapped without touching
+     * (and evaluating) the cells again.
+     */
+    @NonNull
+    public SheetRow snapshot(@NonNull final Row row) {
+        final var lastCellNum = Math.max(row.getLastCellNum(), 0);
+        final var values = new Object[lastCellNum];
         for (var cell : row) {
-            final var value = getCellStringValue(cell);
-            if (value != null && !value.isBlank()) {
-                return cell;
-            }
+            values[cell.getColumnIndex()] = decode(cell);
         }
-        return null;
+        return new SheetRow(row.getRowNum(), values);
     }
 
+    /**
+     * @return typed value of the cell as described in {@link SheetRow}
+     */
     @Nullable
-    protected String getCellStringValue(@NonNull final Row row, @Nullable final Integer columnIndex) {
-        return columnIndex == null ? null : getCellStringValue(row.getCell(columnIndex, Row.MissingCellPolicy.RETURN_BLANK_AS_NULL));
+    public Object decode(@NonNull final Cell cell) {
+        return switch (resolveCellType(cell)) {
+            case STRING -> cell.getStringCellValue().trim();
+            case NUMERIC -> DateUtil.isCellDateFormatted(cell)
+                ? cell.getLocalDateTimeCellValue().toLocalDate()
+                : toBigDecimal(cell.getNumericCellValue());
+            case BOOLEAN -> cell.getBooleanCellValue();
+            case _NONE, FORMULA, ERROR -> "";
+            case BLANK -> null;
+        };
     }
 
     @Nullable
@@ -93,10 +77,7 @@ public class ExcelCellReader {
             return null;
         }
 
-        var cellType = cell.getCellType();
-        if (cellType == CellType.FORMULA) {
-            cellType = evaluator.evaluateFormulaCell(cell);
-        }
+        final var cellType = resolveCellType(cell);
 
         return switch (cellType) {
             case STRING -> cell.getStringCellValue().trim();
@@ -104,12 +85,7 @@ public class ExcelCellReader {
                 if (DateUtil.isCellDateFormatted(cell)) {
                     yield cell.getLocalDateTimeCellValue().toLocalDate().toString();
                 } else {
-                    final var bigDecimal = BigDecimal.valueOf(cell.getNumericCellValue());
-                    if (bigDecimal.scale() <= 0 || bigDecimal.stripTrailingZeros().scale() <= 0) {
-                        yield bigDecimal.toBigInteger().toString();
-                    } else {
-                        yield bigDecimal.toPlainString();
-                    }
+                    yield formatNumericValue(cell.getNumericCellValue());
                 }
             }
             case BOOLEAN -> Boolean.toString(cell.getBooleanCellValue());
@@ -117,38 +93,86 @@ public class ExcelCellReader {
         };
     }
 
-    @Nullable
-    protected LocalDate parseDate(@Nullable final String dateText) {
-        if (dateText == null || dateText.isBlank()) {
-            return null;
+    @NonNull
+    static String formatNumericValue(final double value) {
+        return toBigDecimal(value).toPlainString();
+    }
+
+    /**
+     * Converts a numeric cell value without going through its string representation. Whole numbers get zero scale.
+     */
+    @NonNull
+    static BigDecimal toBigDecimal(final double value) {
+        final var bigDecimal = BigDecimal.valueOf(value);
+        if (bigDecimal.scale() <= 0 || bigDecimal.stripTrailingZeros().scale() <= 0) {
+            return bigDecimal.setScale(0, RoundingMode.UNNECESSARY);
+        } else {
+            return bigDecimal;
         }
-        for (var formatter : DATE_FORMATS) {
-            try {
-                return LocalDate.parse(dateText, formatter);
-            } catch (Exception ignored) {
-                // Try next format
-            }
+    }
+
+    /**
+     * @return type of the cell, for FORMULA cells the type of its result obtained according to the evaluation policy
+     */
+    @NonNull
+    private CellType resolveCellType(@NonNull final Cell cell) {
+        final var cellType = cell.getCellType();
+        if (cellType != CellType.FORMULA) {
+            return cellType;
         }
-        return null;
+        return switch (evaluationPolicy) {
+            case ALWAYS -> evaluator.evaluateFormulaCell(cell);
+            case CACHED, WARM_UP -> cell.getCachedFormulaResultType();
+            case MISSING -> hasCachedFormulaResult(cell) ? cell.getCachedFormulaResultType() : evaluator.evaluateFormulaCell(cell);
+        };
+    }
+
+    private static boolean hasCachedFormulaResult(@NonNull final Cell cell) {
+        // Only XSSF formula cells can miss the cached value, HSSF always stores one
+        return !(cell instanceof XSSFCell xssfCell) || xssfCell.getCTCell().isSetV();
     }
 
     @NonNull
     protected BigDecimal parseBigDecimal(@NonNull final Cell cell) {
-        var value = getCellStringValue(cell);
-        if (value == null || value.isBlank()) {
-            return BigDecimal.ZERO;
-        }
-        value = value.replace(",", ".").replaceAll("[^0-9.\\-]", "");
-        return new BigDecimal(value);
+        return parseBigDecimal(decode(cell));
+    }
+
+    /**
+     * Parses quantities and rates, where a single {@code ','} is the decimal separator.
+     */
+    @NonNull
+    protected BigDecimal parseBigDecimal(@Nullable final Object value) {
+        return decodeDecimal(value, false);
     }
 
     @NonNull
     protected BigDecimal parseMonetaryValue(@NonNull final Cell cell) {
-        var value = getCellStringValue(cell);
-        if (value == null || value.isBlank()) {
+        return parseMonetaryValue(decode(cell));
+    }
+
+    /**
+     * Parses amounts such as {@code "1 234,50 CZK"} or {@code "1,234.50"}, where a single {@code ','} followed by
+     * three digits groups thousands.
+     */
+    @NonNull
+    protected BigDecimal parseMonetaryValue(@Nullable final Object value) {
+        return decodeDecimal(value, true);
+    }
+
+    /**
+     * Takes numbers as they are and scans text without creating intermediate strings.
+     */
+    @NonNull
+    private static BigDecimal decodeDecimal(@Nullable final Object value, final boolean monetary) {
+        if (value instanceof BigDecimal bigDecimal) {
+            return bigDecimal;
+        }
+        if (value == null || value instanceof String text && text.isBlank()) {
             return BigDecimal.ZERO;
         }
-        value = value.replace("CZK", "").replace(",", "").replaceAll("\\s+", "");
-        return new BigDecimal(value);
+        if (value instanceof String text) {
+            return DecimalScanner.parse(text, monetary);
+        }
+        throw new NumberFormatException("Not a number: " + value);
     }
 }
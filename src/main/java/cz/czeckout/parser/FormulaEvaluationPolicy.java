@@ -0,0 +1,28 @@
+package cz.czeckout.parser;
+
+/**
+ * How {@link ExcelCellReader} obtains the values of FORMULA cells.
+ */
+public enum FormulaEvaluationPolicy {
+
+    /**
+     * Evaluates every formula cell when it is read.
+     */
+    ALWAYS,
+
+    /**
+     * Trusts the results cached in the workbook by the application that saved it, nothing is evaluated.
+     */
+    CACHED,
+
+    /**
+     * Evaluates only the formula cells without a cached result.
+     */
+    MISSING,
+
+    /**
+     * Evaluates the whole workbook once up-front and stores the results as the cached ones, so the individual reads
+     * never start a (recursive) evaluation.
+     */
+    WARM_UP
+}
@@ -0,0 +1,185 @@
+package cz.czeckout.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Mapping of data rows into an entity compiled from a single header row. The header names are resolved into column
+ * indices once, so mapping a data row involves neither hashing nor string comparisons.
+ *
+ * @param <T> mapped entity
+ */
+public final class RowBinding<T> {
+
+    private final Supplier<T> factory;
+    private final int keyColumn;
+    private final int[] columns;
+    private final BiConsumer<T, Object>[] setters;
+    private final Consumer<T> afterMapping;
+    private final Map<String, Integer> headerMap;
+
+    private RowBinding(@NonNull final Supplier<T> factory,
+                       final int keyColumn,
+                       final int @NonNull [] columns,
+                       @NonNull final BiConsumer<T, Object>[] setters,
+                       @NonNull final Consumer<T> afterMapping,
+                       @NonNull final Map<String, Integer> headerMap) {
+
+        this.factory = factory;
+        this.keyColumn = keyColumn;
+        this.columns = columns;
+        this.setters = setters;
+        this.afterMapping = afterMapping;
+        this.headerMap = headerMap;
+    }
+
+    @NonNull
+    public static <T> Builder<T> builder(@NonNull final Supplier<T> factory) {
+        return new Builder<>(factory);
+    }
+
+    /**
+     * Maps the data row.
+     *
+     * @return {@code null} if the binding has a key column and it is blank in the row
+     */
+    @Nullable
+    public T map(@NonNull final SheetRow row) {
+        if (keyColumn >= 0 && row.isBlank(keyColumn)) {
+            return null;
+        }
+        final var entity = factory.get();
+        for (int i = 0; i < columns.length; i++) {
+            setters[i].accept(entity, row.getValue(columns[i]));
+        }
+        afterMapping.accept(entity);
+        return entity;
+    }
+
+    /**
+     * @return index of the column with the given header or {@code -1} if there is no such column
+     */
+    public int columnOf(@NonNull final String header) {
+        return headerMap.getOrDefault(header, -1);
+    }
+
+    public static final class Builder<T> {
+
+        private final Supplier<T> factory;
+        private final List<String> headers = new ArrayList<>();
+        private final List<Boolean> required = new ArrayList<>();
+        private final List<BiConsumer<T, Object>> setters = new ArrayList<>();
+        private String keyHeader;
+        private Consumer<T> afterMapping = entity -> { };
+
+        private Builder(@NonNull final Supplier<T> factory) {
+            this.factory = factory;
+        }
+
+        /**
+         * Binds a required column that also decides whether a row is mapped at all: rows where it is blank are skipped.
+         */
+        @NonNull
+        public Builder<T> key(@NonNull final String header, @NonNull final BiConsumer<T, String> setter) {
+            keyHeader = header;
+            return required(header, setter);
+        }
+
+        @NonNull
+        public Builder<T> required(@NonNull final String header, @NonNull final BiConsumer<T, String> setter) {
+            return bind(header, true, text(setter));
+        }
+
+        /**
+         * Binds a required column whose setter receives the typed value as described in {@link SheetRow}.
+         */
+        @NonNull
+        public Builder<T> requiredValue(@NonNull final String header, @NonNull final BiConsumer<T, Object> setter) {
+            return bind(header, true, setter);
+        }
+
+        /**
+         * Binds a column which may be missing in the header row, the field is then left unset.
+         */
+        @NonNull
+        public Builder<T> optional(@NonNull final String header, @NonNull final BiConsumer<T, String> setter) {
+            return bind(header, false, text(setter));
+        }
+
+        @NonNull
+        public Builder<T> optionalValue(@NonNull final String header, @NonNull final BiConsumer<T, Object> setter) {
+            return bind(header, false, setter);
+        }
+
+        @NonNull
+        public Builder<T> afterMapping(@NonNull final Consumer<T> afterMapping) {
+            this.afterMapping = afterMapping;
+            return this;
+        }
+
+        @NonNull
+        private static <T> BiConsumer<T, Object> text(@NonNull final BiConsumer<T, String> setter) {
+            return (entity, value) -> setter.accept(entity, SheetRow.toText(value));
+        }
+
+        @NonNull
+        private Builder<T> bind(@NonNull final String header, final boolean isRequired, @NonNull final BiConsumer<T, Object> setter) {
+            headers.add(header);
+            required.add(isRequired);
+            setters.add(setter);
+            return this;
+        }
+
+        /**
+         * Resolves the bound columns against the header row. Missing columns are reported here, once per header row.
+         *
+         * @param headerMap upper-cased header names and their column indices
+         * @param location  header row location used in the reports
+         * @throws IllegalArgumentException if any of the required columns is missing
+         */
+        @NonNull
+        @SuppressWarnings("unchecked")
+        public RowBinding<T> build(@NonNull final Map<String, Integer> headerMap, @NonNull final String location) {
+            final var boundColumns = new ArrayList<Integer>();
+            final var boundSetters = new ArrayList<BiConsumer<T, Object>>();
+            final var missingRequired = new ArrayList<String>();
+            final var missingOptional = new ArrayList<String>();
+
+            for (int i = 0; i < headers.size(); i++) {
+                final var column = headerMap.get(headers.get(i));
+                if (column != null) {
+                    boundColumns.add(column);
+                    boundSetters.add(setters.get(i));
+                } else if (required.get(i)) {
+                    missingRequired.add(headers.get(i));
+                } else {
+                    missingOptional.add(headers.get(i));
+                }
+            }
+
+            if (!missingRequired.isEmpty() || !missingOptional.isEmpty()) {
+                final var report = "Header row at " + location + " misses columns "
+                    + (missingRequired.isEmpty() ? missingOptional : missingRequired);
+                if (!missingRequired.isEmpty()) {
+                    throw new IllegalArgumentException(report);
+                }
+                System.out.println(report + ", leaving them empty");
+            }
+
+            return new RowBinding<>(
+                factory,
+                keyHeader == null ? -1 : headerMap.get(keyHeader),
+                boundColumns.stream().mapToInt(Integer::intValue).toArray(),
+                boundSetters.toArray(BiConsumer[]::new),
+                afterMapping,
+                Map.copyOf(headerMap));
+        }
+    }
+}
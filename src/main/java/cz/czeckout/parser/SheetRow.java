@@ -0,0 +1,92 @@
+package cz.czeckout.parser;
+
+import java.math.BigDecimal;
+
+import org.apache.poi.ss.util.CellReference;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Values of a single sheet row, each cell decoded exactly once, indexed by the zero-based column index.
+ * <p>
+ * A value is a {@link String}, a {@link BigDecimal} for numbers, a {@link java.time.LocalDate} for date formatted
+ * numbers or a {@link Boolean}. Missing and blank cells are represented as {@code null}. Rows read by the streaming
+ * reader hold the formatted strings only.
+ */
+@RequiredArgsConstructor
+public final class SheetRow {
+
+    @Getter
+    private final int rowNum;
+
+    @NonNull
+    private final Object[] values;
+
+    @Nullable
+    public String get(@Nullable final Integer columnIndex) {
+        return columnIndex == null ? null : get(columnIndex.intValue());
+    }
+
+    /**
+     * @return value of the cell as text
+     */
+    @Nullable
+    public String get(final int columnIndex) {
+        return toText(getValue(columnIndex));
+    }
+
+    /**
+     * @return typed value of the cell
+     */
+    @Nullable
+    public Object getValue(final int columnIndex) {
+        if (columnIndex < 0 || columnIndex >= values.length) {
+            return null;
+        }
+        return values[columnIndex];
+    }
+
+    public boolean isBlank(final int columnIndex) {
+        final var value = getValue(columnIndex);
+        return value == null || value instanceof String text && text.isBlank();
+    }
+
+    public boolean isEmpty() {
+        return getFirstNonEmptyColumn() < 0;
+    }
+
+    public int getFirstNonEmptyColumn() {
+        for (int i = 0; i < values.length; i++) {
+            if (!isBlank(i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Nullable
+    public String getFirstNonEmpty() {
+        final var columnIndex = getFirstNonEmptyColumn();
+        return columnIndex < 0 ? null : get(columnIndex);
+    }
+
+    public int getLastColumn() {
+        return values.length;
+    }
+
+    @Nullable
+    static String toText(@Nullable final Object value) {
+        if (value == null || value instanceof String) {
+            return (String) value;
+        }
+        return value instanceof BigDecimal bigDecimal ? bigDecimal.toPlainString() : value.toString();
+    }
+
+    @NonNull
+    public String formatAddress(final int columnIndex) {
+        return new CellReference(rowNum, columnIndex).formatAsString();
+    }
+}
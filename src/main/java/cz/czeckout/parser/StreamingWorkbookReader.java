@@ -0,0 +1,312 @@
+package cz.czeckout.parser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.SharedStrings;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+import cz.czeckout.Digests;
+
+/**
+ * Reads XLSX sheets row by row using the POI event (SAX) model instead of building the whole workbook in memory.
+ * Formula cells are read from their cached results, as the event model provides no formula evaluation. Cells with
+ * an error are read as empty, like {@link ExcelCellReader#decode} does, and formulas without a cached result are
+ * read as missing cells with a warning.
+ */
+public class StreamingWorkbookReader implements Closeable {
+
+    private final OPCPackage pkg;
+    private final XSSFReader reader;
+    private final SharedStrings sharedStrings;
+    private final StylesTable styles;
+
+    public StreamingWorkbookReader(@NonNull final Path path) throws IOException {
+        try {
+            this.pkg = OPCPackage.open(path.toFile(), PackageAccess.READ);
+        } catch (OpenXML4JException e) {
+            throw new IOException("Cannot open workbook " + path, e);
+        }
+        try {
+            this.reader = new XSSFReader(pkg);
+            this.sharedStrings = new ReadOnlySharedStringsTable(pkg);
+            this.styles = reader.getStylesTable();
+        } catch (OpenXML4JException | SAXException | IOException e) {
+            pkg.revert();
+            throw new IOException("Cannot read workbook " + path, e);
+        }
+    }
+
+    @NonNull
+    public List<String> getSheetNames() throws IOException {
+        final var sheetNames = new ArrayList<String>();
+        final var iterator = sheetIterator();
+        while (iterator.hasNext()) {
+            try (var ignored = iterator.next()) {
+                sheetNames.add(iterator.getSheetName());
+            }
+        }
+        return sheetNames;
+    }
+
+    /**
+     * Streams rows of the given sheet to the consumer.
+     *
+     * @return {@code false} if the sheet does not exist
+     */
+    public boolean readSheet(@NonNull final String sheetName, @NonNull final Consumer<SheetRow> consumer) throws IOException {
+        final var iterator = sheetIterator();
+        while (iterator.hasNext()) {
+            try (var stream = iterator.next()) {
+                if (sheetName.equals(iterator.getSheetName())) {
+                    parseSheet(sheetName, stream, consumer);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Digests the cell data of every sheet straight from the sheet XML parts, without decoding the cells. Shared
+     * string references are replaced by the strings themselves, so a sheet digest changes only if the sheet does.
+     *
+     * @return SHA-256 digests of the sheets by sheet name, in the workbook order
+     */
+    @NonNull
+    public Map<String, byte[]> digestSheets() throws IOException {
+        final var digests = new LinkedHashMap<String, byte[]>();
+        final var iterator = sheetIterator();
+        while (iterator.hasNext()) {
+            try (var stream = iterator.next()) {
+                final var handler = new SheetDataDigester(sharedStrings);
+                final var xmlReader = XMLHelper.newXMLReader();
+                xmlReader.setContentHandler(handler);
+                xmlReader.parse(new InputSource(stream));
+                digests.put(iterator.getSheetName(), handler.digest.digest());
+            } catch (SAXException | ParserConfigurationException e) {
+                throw new IOException("Cannot digest sheet", e);
+            }
+        }
+        return digests;
+    }
+
+    /**
+     * @return SHA-256 digest of the styles part, which holds the number formats the cell values depend on
+     */
+    public byte @NonNull [] digestStyles() throws IOException {
+        final var digest = Digests.newDigest();
+        try (var stream = reader.getStylesData()) {
+            final var buffer = new byte[8192];
+            int read;
+            while ((read = stream.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        } catch (OpenXML4JException e) {
+            throw new IOException("Cannot read styles", e);
+        }
+        return digest.digest();
+    }
+
+    private void parseSheet(@NonNull final String sheetName,
+                            @NonNull final InputStream stream,
+                            @NonNull final Consumer<SheetRow> consumer) throws IOException {
+        final var rowCollector = new RowCollector(sheetName, consumer);
+        rowCollector.setContentHandler(
+            new XSSFSheetXMLHandler(styles, sharedStrings, rowCollector, new CellValueFormatter(), false));
+        try {
+            final var xmlReader = XMLHelper.newXMLReader();
+            xmlReader.setContentHandler(rowCollector);
+            xmlReader.parse(new InputSource(stream));
+        } catch (SAXException | ParserConfigurationException e) {
+            throw new IOException("Cannot parse sheet", e);
+        }
+    }
+
+    private XSSFReader.SheetIterator sheetIterator() throws IOException {
+        try {
+            return reader.getSheetIterator();
+        } catch (OpenXML4JException e) {
+            throw new IOException("Cannot read sheets", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        pkg.revert();
+    }
+
+    private static final class SheetDataDigester extends DefaultHandler {
+
+        private final SharedStrings sharedStrings;
+        private final MessageDigest digest = Digests.newDigest();
+        private final StringBuilder value = new StringBuilder();
+
+        private boolean inSheetData;
+        private boolean inValue;
+        private boolean sharedStringCell;
+
+        private SheetDataDigester(@NonNull final SharedStrings sharedStrings) {
+            this.sharedStrings = sharedStrings;
+        }
+
+        @Override
+        public void startElement(final String uri, final String localName, final String qName, final Attributes attributes) {
+            if ("sheetData".equals(localName)) {
+                inSheetData = true;
+            }
+            if (!inSheetData) {
+                return;
+            }
+            update('<', localName);
+            for (int i = 0; i < attributes.getLength(); i++) {
+                update(' ', attributes.getLocalName(i));
+                update('=', attributes.getValue(i));
+            }
+            if ("c".equals(localName)) {
+                sharedStringCell = "s".equals(attributes.getValue("t"));
+            } else if ("v".equals(localName)) {
+                inValue = true;
+                value.setLength(0);
+            }
+        }
+
+        @Override
+        public void characters(final char[] ch, final int start, final int length) {
+            if (inValue) {
+                value.append(ch, start, length);
+            } else if (inSheetData) {
+                update('"', new String(ch, start, length));
+            }
+        }
+
+        @Override
+        public void endElement(final String uri, final String localName, final String qName) {
+            if (!inSheetData) {
+                return;
+            }
+            if ("v".equals(localName)) {
+                inValue = false;
+                final var text = value.toString().trim();
+                update('"', sharedStringCell && !text.isEmpty()
+                    ? sharedStrings.getItemAt(Integer.parseInt(text)).getString()
+                    : text);
+            }
+            update('>', localName);
+            if ("sheetData".equals(localName)) {
+                inSheetData = false;
+            }
+        }
+
+        private void update(final char marker, @Nullable final String text) {
+            digest.update((byte) marker);
+            if (text != null) {
+                digest.update(text.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    /**
+     * Collects the cells passed on by {@link XSSFSheetXMLHandler}. It also sits in front of the handler to see the cell
+     * XML, which tells error cells from text and formulas without a cached result from missing cells.
+     */
+    private static final class RowCollector extends XMLFilterImpl implements XSSFSheetXMLHandler.SheetContentsHandler {
+
+        private final String sheetName;
+        private final Consumer<SheetRow> consumer;
+
+        private Object[] values = new Object[16];
+        private int lastColumn;
+
+        @Nullable
+        private String cellReference;
+        private boolean errorCell;
+        private boolean formulaCell;
+        private boolean valueCell;
+
+        private RowCollector(@NonNull final String sheetName, @NonNull final Consumer<SheetRow> consumer) {
+            this.sheetName = sheetName;
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void startElement(final String uri, final String localName, final String qName, final Attributes attributes)
+            throws SAXException {
+
+            switch (localName) {
+                case "c" -> {
+                    cellReference = attributes.getValue("r");
+                    errorCell = "e".equals(attributes.getValue("t"));
+                    formulaCell = false;
+                    valueCell = false;
+                }
+                case "f" -> formulaCell = true;
+                case "v" -> valueCell = true;
+                default -> { }
+            }
+            super.startElement(uri, localName, qName, attributes);
+        }
+
+        @Override
+        public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+            super.endElement(uri, localName, qName);
+            if ("c".equals(localName) && formulaCell && !valueCell) {
+                System.out.println("Formula in " + sheetName + "!" + cellReference
+                    + " has no cached result, leaving it empty");
+            }
+        }
+
+        @Override
+        public void startRow(final int rowNum) {
+            Arrays.fill(values, 0, lastColumn, null);
+            lastColumn = 0;
+        }
+
+        @Override
+        public void endRow(final int rowNum) {
+            consumer.accept(new SheetRow(rowNum, Arrays.copyOf(values, lastColumn)));
+        }
+
+        @Override
+        public void cell(@Nullable final String cellReference,
+                         @Nullable final String formattedValue,
+                         @Nullable final XSSFComment comment) {
+
+            final var columnIndex = cellReference == null ? lastColumn : new CellReference(cellReference).getCol();
+            if (columnIndex >= values.length) {
+                values = Arrays.copyOf(values, Math.max(columnIndex + 1, values.length * 2));
+            }
+            // Passed on as "ERROR:#VALUE!" and the like
+            values[columnIndex] = errorCell ? "" : formattedValue == null ? null : formattedValue.trim();
+            lastColumn = Math.max(lastColumn, columnIndex + 1);
+        }
+    }
+}
@@ -0,0 +1,384 @@
+package cz.czeckout.parser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import cz.czeckout.entity.Account;
+import cz.czeckout.entity.Address;
+import cz.czeckout.entity.Invoice;
+import cz.czeckout.entity.Item;
+import cz.czeckout.entity.Metadata;
+import cz.czeckout.entity.Method;
+import cz.czeckout.entity.Party;
+import tools.jackson.core.JacksonException;
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.JsonToken;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.dataformat.xml.XmlMapper;
+
+/**
+ * Reads invoices from a JSON or XML document token by token, so the document is never loaded as a whole and every
+ * invoice is handed over as soon as it is read. The document holds the same data as a workbook:
+ * <pre>{@code
+ * {
+ *   "parties":   [{"id": "ME", "name": "...", "address": "A1", ...}],
+ *   "addresses": [{"id": "A1", "street": "...", ...}],
+ *   "accounts":  [{"id": "BANK", "accountNumber": "...", "bankCode": "...", ...}],
+ *   "methods":   [{"id": "TRANSFER", "name": "..."}],
+ *   "variables": {"key": "value"},
+ *   "sheets": [{
+ *     "name": "2024",
+ *     "invoices": [{"name": "2024001", "issuer": "ME", "issueDate": "2024-01-01", ..., "items": [{...}]}]
+ *   }]
+ * }
+ * }</pre>
+ * Invoices reference the parties, accounts and methods by their ids, so the metadata must precede the sheets. The
+ * properties are named after the entity fields. In XML, the repeated elements stand for the arrays, such as
+ * {@code <party>} for {@code "parties"}, and the sheet name may be an attribute:
+ * {@code <sheet name="2024"><invoice>...</invoice></sheet>}.
+ */
+public final class StructuredInvoiceReader implements Closeable {
+
+    public enum Format {
+        JSON, XML;
+
+        /**
+         * @return format by the file extension, {@code null} if it is neither JSON nor XML
+         */
+        @Nullable
+        public static Format of(@NonNull final Path path) {
+            final var fileName = path.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (fileName.endsWith(".json")) {
+                return JSON;
+            }
+            return fileName.endsWith(".xml") ? XML : null;
+        }
+    }
+
+    @FunctionalInterface
+    private interface ElementReader {
+        void read() throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface PropertyReader {
+        void read(@NonNull String name) throws IOException;
+    }
+
+    private final JsonParser parser;
+
+    private final Map<String, Party> parties = new HashMap<>();
+    private final Map<String, Address> addresses = new HashMap<>();
+    private final Map<String, Account> accounts = new HashMap<>();
+    private final Map<String, Method> methods = new HashMap<>();
+    private final Map<String, String> variables = new LinkedHashMap<>();
+
+    // Each date property remembers its own format
+    private final DateColumnParser issueDates = new DateColumnParser();
+    private final DateColumnParser taxDates = new DateColumnParser();
+    private final DateColumnParser dueDates = new DateColumnParser();
+
+    /**
+     * Built once the first sheet starts, the metadata cannot change from then on.
+     */
+    private Metadata metadata;
+
+    public StructuredInvoiceReader(@NonNull final Path path, @NonNull final Format format) throws IOException {
+        try {
+            parser = switch (format) {
+                case JSON -> JsonMapper.shared().createParser(path);
+                case XML -> XmlMapper.shared().createParser(path);
+            };
+        } catch (JacksonException e) {
+            throw new IOException("Cannot open document " + path, e);
+        }
+    }
+
+    /**
+     * Reads the whole document.
+     *
+     * @param invoiceConsumer receives the sheet name and the invoice, one invoice after another
+     * @return metadata the invoices reference
+     * @throws IllegalArgumentException if the document does not have the expected structure
+     */
+    @NonNull
+    public Metadata read(@NonNull final BiConsumer<String, Invoice> invoiceConsumer) throws IOException {
+        try {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw invalid("Document must be an object");
+            }
+            readObject(name -> {
+                switch (name) {
+                    case "sheets", "sheet" -> readElements(() -> readSheet(invoiceConsumer));
+                    case "parties", "party", "addresses", "address", "accounts", "account", "methods", "method",
+                         "variables" -> readMetadata(name);
+                    default -> parser.skipChildren();
+                }
+            });
+            return buildMetadata();
+        } catch (JacksonException e) {
+            throw new IOException("Cannot read document at " + location(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        parser.close();
+    }
+
+    private void readMetadata(@NonNull final String name) throws IOException {
+        if (metadata != null) {
+            throw invalid("Metadata '" + name + "' must precede the sheets");
+        }
+        switch (name) {
+            case "parties", "party" -> readElements(() -> {
+                final var party = readParty();
+                parties.put(party.getId(), party);
+            });
+            case "addresses", "address" -> readElements(() -> {
+                final var address = readAddress();
+                addresses.put(address.getId(), address);
+            });
+            case "accounts", "account" -> readElements(() -> {
+                final var account = readAccount();
+                accounts.put(account.getId(), account);
+            });
+            case "methods", "method" -> readElements(() -> {
+                final var method = readMethod();
+                methods.put(method.getId(), method);
+            });
+            case "variables" -> readObject(key -> variables.put(key, readText()));
+            default -> parser.skipChildren();
+        }
+    }
+
+    private void readSheet(@NonNull final BiConsumer<String, Invoice> invoiceConsumer) throws IOException {
+        final var metadata = buildMetadata();
+        final var sheetName = new String[1];
+        readObject(name -> {
+            switch (name) {
+                case "name" -> sheetName[0] = readText();
+                case "invoices", "invoice" -> readElements(() -> {
+                    if (sheetName[0] == null) {
+                        throw invalid("Sheet name must precede its invoices");
+                    }
+                    invoiceConsumer.accept(sheetName[0], readInvoice(metadata));
+                });
+                default -> parser.skipChildren();
+            }
+        });
+    }
+
+    @NonNull
+    private Invoice readInvoice(@NonNull final Metadata metadata) throws IOException {
+        final var invoice = new Invoice();
+        readObject(name -> {
+            switch (name) {
+                case "name" -> invoice.setName(readText());
+                case "issuer" -> invoice.setIssuer(metadata.getParties().get(readText()));
+                case "recipient" -> invoice.setRecipient(metadata.getParties().get(readText()));
+                case "issueDate" -> invoice.setIssueDate(issueDates.parse(readText()));
+                case "taxDate" -> invoice.setTaxDate(taxDates.parse(readText()));
+                case "dueDate" -> invoice.setDueDate(dueDates.parse(readText()));
+                case "method" -> invoice.setMethod(metadata.getMethods().get(readText()));
+                case "account" -> invoice.setAccount(metadata.getAccounts().get(readText()));
+                case "vs" -> invoice.setVs(readText());
+                case "ks" -> invoice.setKs(readText());
+                case "ss" -> invoice.setSs(readText());
+                case "message" -> invoice.setMessage(readText());
+                case "flag" -> invoice.setFlag(readText());
+                case "items", "item" -> readElements(() -> invoice.getItems().add(readItem()));
+                default -> parser.skipChildren();
+            }
+        });
+        return invoice;
+    }
+
+    @NonNull
+    private Item readItem() throws IOException {
+        final var item = new Item();
+        readObject(name -> {
+            switch (name) {
+                case "name" -> item.setName(readText());
+                case "unit" -> item.setUnit(readText());
+                case "quantity" -> item.setQuantity(readDecimal());
+                case "unitPrice" -> item.setUnitPrice(readDecimal());
+                case "basePrice" -> item.setBasePrice(readDecimal());
+                case "vatRate" -> item.setVatRate(readDecimal());
+                case "vatPrice" -> item.setVatPrice(readDecimal());
+                case "totalPrice" -> item.setTotalPrice(readDecimal());
+                case "flag" -> item.setFlag(readText());
+                default -> parser.skipChildren();
+            }
+        });
+        return item;
+    }
+
+    @NonNull
+    private Party readParty() throws IOException {
+        final var party = new Party();
+        readObject(name -> {
+            switch (name) {
+                case "id" -> party.setId(readText());
+                case "name" -> party.setName(readText());
+                case "identifierType" -> party.setIdentifierType(readText());
+                case "identifier" -> party.setIdentifier(readText());
+                case "vatPrefix" -> party.setVatPrefix(readText());
+                case "vat" -> party.setVat(readText());
+                case "address", "addressReference" -> party.setAddressReference(readText());
+                default -> parser.skipChildren();
+            }
+        });
+        return party;
+    }
+
+    @NonNull
+    private Address readAddress() throws IOException {
+        final var address = new Address();
+        readObject(name -> {
+            switch (name) {
+                case "id" -> address.setId(readText());
+                case "street" -> address.setStreet(readText());
+                case "houseNumber" -> address.setHouseNumber(readText());
+                case "city" -> address.setCity(readText());
+                case "district" -> address.setDistrict(readText());
+                case "zipCode" -> address.setZipCode(readText());
+                case "country" -> address.setCountry(readText());
+                default -> parser.skipChildren();
+            }
+        });
+        return address;
+    }
+
+    @NonNull
+    private Account readAccount() throws IOException {
+        final var account = new Account();
+        readObject(name -> {
+            switch (name) {
+                case "id" -> account.setId(readText());
+                case "accountNumber" -> account.setAccountNumber(readText());
+                case "bankCode" -> account.setBankCode(readText());
+                case "bankName" -> account.setBankName(readText());
+                default -> parser.skipChildren();
+            }
+        });
+        if (account.getAccountNumber() == null || account.getBankCode() == null) {
+            throw invalid("Account " + account.getId() + " misses the account number or the bank code");
+        }
+        EntityRowMapper.generateIban(account);
+        return account;
+    }
+
+    @NonNull
+    private Method readMethod() throws IOException {
+        final var method = new Method();
+        readObject(name -> {
+            switch (name) {
+                case "id" -> method.setId(readText());
+                case "name" -> method.setName(readText());
+                default -> parser.skipChildren();
+            }
+        });
+        return method;
+    }
+
+    // Tokens
+
+    /**
+     * Reads the properties of the object starting at the current token.
+     */
+    private void readObject(@NonNull final PropertyReader propertyReader) throws IOException {
+        if (!parser.hasToken(JsonToken.START_OBJECT)) {
+            throw invalid("Expected an object");
+        }
+        while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+            final var name = parser.currentName();
+            parser.nextToken();
+            propertyReader.read(name);
+        }
+    }
+
+    /**
+     * Reads either an array of elements (JSON) or a single element, which may be repeated (XML).
+     */
+    private void readElements(@NonNull final ElementReader elementReader) throws IOException {
+        if (!parser.hasToken(JsonToken.START_ARRAY)) {
+            elementReader.read();
+            return;
+        }
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            elementReader.read();
+        }
+    }
+
+    /**
+     * @return the current scalar value as text, {@code null} for null and empty values, as XML cannot tell them apart
+     */
+    @Nullable
+    private String readText() throws IOException {
+        if (parser.hasToken(JsonToken.VALUE_NULL)) {
+            return null;
+        }
+        if (!parser.currentToken().isScalarValue()) {
+            throw invalid("Expected a value");
+        }
+        final var text = parser.getString();
+        return text.isEmpty() ? null : text;
+    }
+
+    /**
+     * @return the current numeric or textual value as a number, zero for null and blank values like in the workbook
+     */
+    @NonNull
+    private BigDecimal readDecimal() throws IOException {
+        if (parser.currentToken().isNumeric()) {
+            return parser.getDecimalValue();
+        }
+        final var text = readText();
+        if (text == null || text.isBlank()) {
+            return BigDecimal.ZERO;
+        }
+        try {
+            return DecimalScanner.parse(text, false);
+        } catch (NumberFormatException e) {
+            throw invalid("Invalid number " + text);
+        }
+    }
+
+    @NonNull
+    private Metadata buildMetadata() {
+        if (metadata == null) {
+            parties.values().forEach(party -> party.setAddress(addresses.get(party.getAddressReference())));
+            // Shared by all invoices, so it must stay read-only from now on
+            metadata = new Metadata(
+                Collections.unmodifiableMap(parties),
+                Collections.unmodifiableMap(addresses),
+                Collections.unmodifiableMap(accounts),
+                Collections.unmodifiableMap(methods),
+                Collections.unmodifiableMap(variables));
+        }
+        return metadata;
+    }
+
+    @NonNull
+    private IllegalArgumentException invalid(@NonNull final String message) {
+        return new IllegalArgumentException(message + " at " + location());
+    }
+
+    @NonNull
+    private String location() {
+        final var location = parser.currentTokenLocation();
+        return "line " + location.getLineNr() + ", column " + location.getColumnNr();
+    }
+}
@@ -0,0 +1,511 @@
+package cz.czeckout.parser;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import cz.czeckout.CodeVersion;
+import cz.czeckout.Digests;
+import cz.czeckout.entity.Account;
+import cz.czeckout.entity.Address;
+import cz.czeckout.entity.Invoice;
+import cz.czeckout.entity.Item;
+import cz.czeckout.entity.Metadata;
+import cz.czeckout.entity.Method;
+import cz.czeckout.entity.Party;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * On-disk cache of parsed workbooks. The metadata of the ROOT sheet and the invoices of every other sheet are stored
+ * separately in a compact binary format, keyed by the content digests of the raw sheet XML parts, so only the edited
+ * sheets have to be parsed again.
+ * <p>
+ * The key of the metadata covers the ROOT sheet, the styles and the {@linkplain CodeVersion code} of the parser and
+ * POI, the key of an invoice sheet covers the sheet and the metadata key, as the invoices reference the parties,
+ * accounts and methods. Unreadable entries are reported and treated as missing, unwritable ones are reported and
+ * skipped.
+ * <p>
+ * The cache is opt-in, as some of the inputs of a sheet are not tracked: formulas referencing invoice sheets other
+ * than the cached one, and volatile functions such as {@code TODAY()}, keep their cached values. Neither are the
+ * entries ever evicted, the directory grows with every edit of a sheet until it is deleted.
+ */
+public final class WorkbookParseCache {
+
+    /**
+     * Bumped whenever the binary format changes, which invalidates all existing entries. The changes of the parsing
+     * rules are covered by the code version in the keys.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int MAGIC = 0x435A4B50; // CZKP
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final Path directory;
+
+    /**
+     * Version of the code the parsed values depend on.
+     */
+    private final byte[] codeVersion;
+
+    public WorkbookParseCache(@NonNull final Path directory) {
+        this.directory = directory;
+        this.codeVersion = CodeVersion.of(WorkbookParseCache.class, Workbook.class, XSSFReader.class)
+            .getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Cache keys of a single workbook.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static final class Fingerprint {
+
+        /**
+         * Key of the ROOT sheet metadata.
+         */
+        @NonNull
+        private final String metadataKey;
+
+        /**
+         * Keys of the invoice sheets by sheet name, in the workbook order.
+         */
+        @NonNull
+        private final Map<String, String> sheetKeys;
+    }
+
+    /**
+     * Digests the sheets of the workbook without parsing them.
+     *
+     * @param variant parser configuration the parsed values depend on, such as the formula evaluation policy
+     * @throws IllegalArgumentException if the workbook has no ROOT sheet
+     */
+    @NonNull
+    public Fingerprint fingerprint(@NonNull final Path workbook, @NonNull final String variant) throws IOException {
+        try (var reader = new StreamingWorkbookReader(workbook)) {
+            final var sheetDigests = reader.digestSheets();
+            final var rootDigest = sheetDigests.get("ROOT");
+            if (rootDigest == null) {
+                throw new IllegalArgumentException("Sheet ROOT not found");
+            }
+
+            final var metadataKey = key(codeVersion, variant.getBytes(StandardCharsets.UTF_8), reader.digestStyles(),
+                rootDigest);
+            final var sheetKeys = new LinkedHashMap<String, String>();
+            sheetDigests.forEach((sheetName, digest) -> {
+                if (!"ROOT".equals(sheetName)) {
+                    sheetKeys.put(sheetName, key(metadataKey.getBytes(StandardCharsets.US_ASCII), digest));
+                }
+            });
+            return new Fingerprint(metadataKey, sheetKeys);
+        }
+    }
+
+    /**
+     * @return cached metadata with the party addresses resolved, {@code null} if there is no such entry
+     */
+    @Nullable
+    public Metadata loadMetadata(@NonNull final String key) {
+        return load(key, in -> {
+            final var addresses = readMap(in, WorkbookParseCache::readAddress);
+            final var parties = readMap(in, WorkbookParseCache::readParty);
+            final var accounts = readMap(in, WorkbookParseCache::readAccount);
+            final var methods = readMap(in, WorkbookParseCache::readMethod);
+            final var variables = new LinkedHashMap<String, String>();
+            final var variableCount = readCount(in);
+            for (int i = 0; i < variableCount; i++) {
+                variables.put(readString(in), readString(in));
+            }
+
+            parties.values().forEach(party -> party.setAddress(addresses.get(party.getAddressReference())));
+            return new Metadata(
+                Collections.unmodifiableMap(parties),
+                Collections.unmodifiableMap(addresses),
+                Collections.unmodifiableMap(accounts),
+                Collections.unmodifiableMap(methods),
+                Collections.unmodifiableMap(variables));
+        });
+    }
+
+    public void storeMetadata(@NonNull final String key, @NonNull final Metadata metadata) {
+        store(key, out -> {
+            writeMap(out, metadata.getAddresses(), WorkbookParseCache::writeAddress);
+            writeMap(out, metadata.getParties(), WorkbookParseCache::writeParty);
+            writeMap(out, metadata.getAccounts(), WorkbookParseCache::writeAccount);
+            writeMap(out, metadata.getMethods(), WorkbookParseCache::writeMethod);
+            out.writeInt(metadata.getVariables().size());
+            for (var variable : metadata.getVariables().entrySet()) {
+                writeString(out, variable.getKey());
+                writeString(out, variable.getValue());
+            }
+        });
+    }
+
+    /**
+     * @param metadata metadata the invoice parties, accounts and methods are resolved against
+     * @return cached invoices of a sheet, {@code null} if there is no such entry
+     */
+    @Nullable
+    public List<Invoice> loadInvoices(@NonNull final String key, @NonNull final Metadata metadata) {
+        return load(key, in -> {
+            final var count = readCount(in);
+            final var invoices = new ArrayList<Invoice>(count);
+            for (int i = 0; i < count; i++) {
+                invoices.add(readInvoice(in, metadata));
+            }
+            return invoices;
+        });
+    }
+
+    public void storeInvoices(@NonNull final String key, @NonNull final List<Invoice> invoices) {
+        store(key, out -> {
+            out.writeInt(invoices.size());
+            for (var invoice : invoices) {
+                writeInvoice(out, invoice);
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface Reader<T> {
+        T read(@NonNull DataInputStream in) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface Body {
+        void write(@NonNull DataOutputStream out) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface Writer<T> {
+        void write(@NonNull DataOutputStream out, T value) throws IOException;
+    }
+
+    @Nullable
+    private <T> T load(@NonNull final String key, @NonNull final Reader<T> reader) {
+        final var file = directory.resolve(key + ".bin");
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unknown format");
+            }
+            return reader.read(in);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            System.out.println("Cannot read parse cache entry " + file + ", parsing again: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void store(@NonNull final String key, @NonNull final Body body) {
+        final var file = directory.resolve(key + ".bin");
+        try {
+            Files.createDirectories(directory);
+            Digests.writeAtomically(file, out -> {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                body.write(out);
+            });
+        } catch (IOException e) {
+            System.out.println("Cannot write parse cache entry " + file + ", continuing without it: " + e.getMessage());
+        }
+    }
+
+    @NonNull
+    private static String key(final byte @NonNull [] @NonNull ... parts) {
+        final var digest = Digests.newDigest();
+        Digests.updateInt(digest, FORMAT_VERSION);
+        for (var part : parts) {
+            Digests.update(digest, part);
+        }
+        return HEX.formatHex(digest.digest());
+    }
+
+    // Entities
+
+    private static void writeAddress(@NonNull final DataOutputStream out, @NonNull final Address address) throws IOException {
+        writeString(out, address.getId());
+        writeString(out, address.getStreet());
+        writeString(out, address.getHouseNumber());
+        writeString(out, address.getCity());
+        writeString(out, address.getDistrict());
+        writeString(out, address.getZipCode());
+        writeString(out, address.getCountry());
+    }
+
+    @NonNull
+    private static Address readAddress(@NonNull final DataInputStream in) throws IOException {
+        final var address = new Address();
+        address.setId(readString(in));
+        address.setStreet(readString(in));
+        address.setHouseNumber(readString(in));
+        address.setCity(readString(in));
+        address.setDistrict(readString(in));
+        address.setZipCode(readString(in));
+        address.setCountry(readString(in));
+        return address;
+    }
+
+    private static void writeParty(@NonNull final DataOutputStream out, @NonNull final Party party) throws IOException {
+        writeString(out, party.getId());
+        writeString(out, party.getName());
+        writeString(out, party.getIdentifierType());
+        writeString(out, party.getIdentifier());
+        writeString(out, party.getVatPrefix());
+        writeString(out, party.getVat());
+        writeString(out, party.getAddressReference());
+    }
+
+    @NonNull
+    private static Party readParty(@NonNull final DataInputStream in) throws IOException {
+        final var party = new Party();
+        party.setId(readString(in));
+        party.setName(readString(in));
+        party.setIdentifierType(readString(in));
+        party.setIdentifier(readString(in));
+        party.setVatPrefix(readString(in));
+        party.setVat(readString(in));
+        party.setAddressReference(readString(in));
+        return party;
+    }
+
+    private static void writeAccount(@NonNull final DataOutputStream out, @NonNull final Account account) throws IOException {
+        writeString(out, account.getId());
+        writeString(out, account.getAccountNumber());
+        writeString(out, account.getBankCode());
+        writeString(out, account.getBankName());
+        writeString(out, account.getIban());
+    }
+
+    @NonNull
+    private static Account readAccount(@NonNull final DataInputStream in) throws IOException {
+        final var account = new Account();
+        account.setId(readString(in));
+        account.setAccountNumber(readString(in));
+        account.setBankCode(readString(in));
+        account.setBankName(readString(in));
+        account.setIban(readString(in));
+        return account;
+    }
+
+    private static void writeMethod(@NonNull final DataOutputStream out, @NonNull final Method method) throws IOException {
+        writeString(out, method.getId());
+        writeString(out, method.getName());
+    }
+
+    @NonNull
+    private static Method readMethod(@NonNull final DataInputStream in) throws IOException {
+        final var method = new Method();
+        method.setId(readString(in));
+        method.setName(readString(in));
+        return method;
+    }
+
+    private static void writeInvoice(@NonNull final DataOutputStream out, @NonNull final Invoice invoice) throws IOException {
+        writeString(out, invoice.getName());
+        writeReference(out, invoice.getIssuer(), Party::getId);
+        writeReference(out, invoice.getRecipient(), Party::getId);
+        writeDate(out, invoice.getIssueDate());
+        writeDate(out, invoice.getTaxDate());
+        writeDate(out, invoice.getDueDate());
+        writeReference(out, invoice.getMethod(), Method::getId);
+        writeReference(out, invoice.getAccount(), Account::getId);
+        writeString(out, invoice.getVs());
+        writeString(out, invoice.getKs());
+        writeString(out, invoice.getSs());
+        writeString(out, invoice.getMessage());
+        writeString(out, invoice.getFlag());
+        out.writeInt(invoice.getItems().size());
+        for (var item : invoice.getItems()) {
+            writeItem(out, item);
+        }
+    }
+
+    @NonNull
+    private static Invoice readInvoice(@NonNull final DataInputStream in, @NonNull final Metadata metadata) throws IOException {
+        final var invoice = new Invoice();
+        invoice.setName(readString(in));
+        invoice.setIssuer(readReference(in, metadata.getParties()));
+        invoice.setRecipient(readReference(in, metadata.getParties()));
+        invoice.setIssueDate(readDate(in));
+        invoice.setTaxDate(readDate(in));
+        invoice.setDueDate(readDate(in));
+        invoice.setMethod(readReference(in, metadata.getMethods()));
+        invoice.setAccount(readReference(in, metadata.getAccounts()));
+        invoice.setVs(readString(in));
+        invoice.setKs(readString(in));
+        invoice.setSs(readString(in));
+        invoice.setMessage(readString(in));
+        invoice.setFlag(readString(in));
+        final var itemCount = readCount(in);
+        for (int i = 0; i < itemCount; i++) {
+            invoice.getItems().add(readItem(in));
+        }
+        return invoice;
+    }
+
+    private static void writeItem(@NonNull final DataOutputStream out, @NonNull final Item item) throws IOException {
+        writeString(out, item.getName());
+        writeString(out, item.getUnit());
+        writeDecimal(out, item.getQuantity());
+        writeDecimal(out, item.getUnitPrice());
+        writeDecimal(out, item.getBasePrice());
+        writeDecimal(out, item.getVatRate());
+        writeDecimal(out, item.getVatPrice());
+        writeDecimal(out, item.getTotalPrice());
+        writeString(out, item.getFlag());
+    }
+
+    @NonNull
+    private static Item readItem(@NonNull final DataInputStream in) throws IOException {
+        final var item = new Item();
+        item.setName(readString(in));
+        item.setUnit(readString(in));
+        item.setQuantity(readDecimal(in));
+        item.setUnitPrice(readDecimal(in));
+        item.setBasePrice(readDecimal(in));
+        item.setVatRate(readDecimal(in));
+        item.setVatPrice(readDecimal(in));
+        item.setTotalPrice(readDecimal(in));
+        item.setFlag(readString(in));
+        return item;
+    }
+
+    // Values
+
+    private static <T> void writeMap(@NonNull final DataOutputStream out,
+                                     @NonNull final Map<String, T> map,
+                                     @NonNull final Writer<T> writer) throws IOException {
+        out.writeInt(map.size());
+        for (var entry : map.entrySet()) {
+            writeString(out, entry.getKey());
+            writer.write(out, entry.getValue());
+        }
+    }
+
+    @NonNull
+    private static <T> Map<String, T> readMap(@NonNull final DataInputStream in,
+                                              @NonNull final Reader<T> reader) throws IOException {
+        final var count = readCount(in);
+        final var map = new HashMap<String, T>();
+        for (int i = 0; i < count; i++) {
+            final var key = readString(in);
+            map.put(key, reader.read(in));
+        }
+        return map;
+    }
+
+    /**
+     * References the metadata entity by its id, the presence is written apart as even a missing id may match.
+     */
+    private static <T> void writeReference(@NonNull final DataOutputStream out,
+                                           @Nullable final T entity,
+                                           @NonNull final Function<T, String> idGetter) throws IOException {
+        out.writeBoolean(entity != null);
+        if (entity != null) {
+            writeString(out, idGetter.apply(entity));
+        }
+    }
+
+    @Nullable
+    private static <T> T readReference(@NonNull final DataInputStream in, @NonNull final Map<String, T> entities) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        final var id = readString(in);
+        final var entity = entities.get(id);
+        if (entity == null) {
+            throw new IOException("Unknown reference " + id);
+        }
+        return entity;
+    }
+
+    private static void writeString(@NonNull final DataOutputStream out, @Nullable final String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        final var bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    @Nullable
+    private static String readString(@NonNull final DataInputStream in) throws IOException {
+        final var length = in.readInt();
+        if (length == -1) {
+            return null;
+        }
+        return new String(readBytes(in, length), StandardCharsets.UTF_8);
+    }
+
+    private static void writeDecimal(@NonNull final DataOutputStream out, @Nullable final BigDecimal value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeInt(value.scale());
+            final var unscaled = value.unscaledValue().toByteArray();
+            out.writeInt(unscaled.length);
+            out.write(unscaled);
+        }
+    }
+
+    @Nullable
+    private static BigDecimal readDecimal(@NonNull final DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        final var scale = in.readInt();
+        return new BigDecimal(new BigInteger(readBytes(in, in.readInt())), scale);
+    }
+
+    private static void writeDate(@NonNull final DataOutputStream out, @Nullable final LocalDate value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value.toEpochDay());
+        }
+    }
+
+    @Nullable
+    private static LocalDate readDate(@NonNull final DataInputStream in) throws IOException {
+        return in.readBoolean() ? LocalDate.ofEpochDay(in.readLong()) : null;
+    }
+
+    private static int readCount(@NonNull final DataInputStream in) throws IOException {
+        final var count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Negative count " + count);
+        }
+        return count;
+    }
+
+    private static byte @NonNull [] readBytes(@NonNull final DataInputStream in, final int length) throws IOException {
+        if (length < 0) {
+            throw new IOException("Negative length " + length);
+        }
+        final var bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
@@ -4,12 +4,21 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
-import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.usermodel.WorkbookFactory;
 import org.checkerframework.checker.nullness.qual.Nullable;
@@ -17,11 +26,19 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 import cz.czeckout.entity.Account;
 import cz.czeckout.entity.Address;
 import cz.czeckout.entity.Invoice;
+import cz.czeckout.entity.Item;
 import cz.czeckout.entity.Metadata;
 import cz.czeckout.entity.Method;
 import cz.czeckout.entity.Party;
 import cz.czeckout.entity.PdfData;
 import cz.czeckout.parser.EntityRowMapper;
+import cz.czeckout.parser.FormulaEvaluationPolicy;
+import cz.czeckout.parser.RowBinding;
+import cz.czeckout.parser.SheetRow;
+import cz.czeckout.parser.StreamingWorkbookReader;
+import cz.czeckout.parser.StructuredInvoiceReader;
+import cz.czeckout.parser.WorkbookParseCache;
+import lombok.Getter;
 import lombok.NonNull;
 
 
@@ -31,29 +48,267 @@ public class DataParsingService {
         NONE, PARTIES, ADDRESSES, ACCOUNTS, METHODS, VARIABLES
     }
 
+    @FunctionalInterface
+    private interface SheetParser {
+        @NonNull
+        List<Invoice> parseInvoices(@NonNull EntityRowMapper entityRowMapper, @NonNull String sheetName) throws IOException;
+    }
+
+    /**
+     * Metadata and invoices by sheet name, including the sheets without any invoices.
+     */
+    private record ParsedWorkbook(@NonNull Metadata metadata, @NonNull Map<String, List<Invoice>> invoices) {
+    }
+
+    /**
+     * Whether the workbook is read sheet by sheet through the POI event model instead of being loaded as a whole.
+     */
+    private final boolean streaming;
+
+    /**
+     * Maximum number of invoice sheets parsed at the same time, {@code 1} parses the sheets one after another.
+     */
+    private final int parallelism;
+
+    /**
+     * How the formula cells are read in the in-memory mode, the streaming mode always reads the cached results.
+     */
+    private final FormulaEvaluationPolicy evaluationPolicy;
+
+    /**
+     * Cache of the parsed sheets, {@code null} parses the whole workbook on every run.
+     */
+    @Nullable
+    private final WorkbookParseCache parseCache;
+
+    public DataParsingService() {
+        this(false, 1, FormulaEvaluationPolicy.ALWAYS, null);
+    }
+
+    public DataParsingService(final boolean streaming,
+                              final int parallelism,
+                              @NonNull final FormulaEvaluationPolicy evaluationPolicy,
+                              @Nullable final WorkbookParseCache parseCache) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.streaming = streaming;
+        this.parallelism = parallelism;
+        this.evaluationPolicy = evaluationPolicy;
+        this.parseCache = parseCache;
+    }
+
+    /**
+     * Parses an Excel workbook, or a JSON or XML document with the same data as described in
+     * {@link StructuredInvoiceReader}.
+     * <p>
+     * The sheets are processed as a whole, so a JSON or XML document is collected with all its invoices held in memory
+     * like a workbook is. Only {@link #parseDocument(Path, BiConsumer)} streams the invoices one at a time.
+     *
+     * @return invoices with their metadata by sheet name, the sheets without any invoices are left out
+     */
     @NonNull
     public Map<String, PdfData> parseWorkbook(@NonNull final Path path) throws IOException {
+        final ParsedWorkbook parsedWorkbook;
+        if (StructuredInvoiceReader.Format.of(path) != null) {
+            final var invoices = new LinkedHashMap<String, List<Invoice>>();
+            final var metadata = parseDocument(path, (sheetName, invoice) ->
+                invoices.computeIfAbsent(sheetName, name -> new ArrayList<>()).add(invoice));
+            parsedWorkbook = new ParsedWorkbook(metadata, invoices);
+        } else if (parseCache == null) {
+            parsedWorkbook = parseWorkbook(path, null, sheetName -> true);
+        } else {
+            parsedWorkbook = parseWorkbookCached(path, parseCache);
+        }
+
+        final var sheetData = new HashMap<String, PdfData>();
+        parsedWorkbook.invoices().forEach((sheetName, invoices) -> {
+            if (!invoices.isEmpty()) {
+                sheetData.put(sheetName, new PdfData(invoices, parsedWorkbook.metadata()));
+            }
+        });
+        return sheetData;
+    }
+
+    /**
+     * Streams the invoices of a JSON or XML document one at a time. The document itself is never held in memory, the
+     * invoices are held only as long as the consumer keeps them.
+     *
+     * @param invoiceConsumer receives the sheet name and the invoice
+     * @return metadata the invoices reference
+     * @throws IllegalArgumentException if the file is neither JSON nor XML or its structure is not valid
+     */
+    @NonNull
+    public Metadata parseDocument(@NonNull final Path path,
+                                  @NonNull final BiConsumer<String, Invoice> invoiceConsumer) throws IOException {
+        final var format = StructuredInvoiceReader.Format.of(path);
+        if (format == null) {
+            throw new IllegalArgumentException("Unsupported document " + path + ", expected JSON or XML");
+        }
+        try (var reader = new StructuredInvoiceReader(path, format)) {
+            return reader.read(invoiceConsumer);
+        }
+    }
+
+    /**
+     * Loads the unchanged sheets from the cache and parses only the others, which are then cached as well.
+     */
+    @NonNull
+    private ParsedWorkbook parseWorkbookCached(@NonNull final Path path,
+                                               @NonNull final WorkbookParseCache parseCache) throws IOException {
+
+        final var fingerprint = parseCache.fingerprint(path, streaming ? "STREAMING" : evaluationPolicy.name());
+        var metadata = parseCache.loadMetadata(fingerprint.getMetadataKey());
+
+        final var invoices = new LinkedHashMap<String, List<Invoice>>();
+        final var staleSheetNames = new HashSet<String>();
+        for (var sheet : fingerprint.getSheetKeys().entrySet()) {
+            final var cachedInvoices = metadata == null ? null : parseCache.loadInvoices(sheet.getValue(), metadata);
+            // Reserves the position of the sheet, so that the workbook order is kept
+            invoices.put(sheet.getKey(), cachedInvoices);
+            if (cachedInvoices == null) {
+                staleSheetNames.add(sheet.getKey());
+            }
+        }
+        System.out.println("Parse cache: " + (invoices.size() - staleSheetNames.size()) + " sheets loaded, "
+            + staleSheetNames.size() + " sheets to parse");
+
+        if (metadata != null && staleSheetNames.isEmpty()) {
+            return new ParsedWorkbook(metadata, invoices);
+        }
+
+        final var parsedWorkbook = parseWorkbook(path, metadata, staleSheetNames::contains);
+        if (metadata == null) {
+            metadata = parsedWorkbook.metadata();
+            parseCache.storeMetadata(fingerprint.getMetadataKey(), metadata);
+        }
+        for (var sheet : parsedWorkbook.invoices().entrySet()) {
+            parseCache.storeInvoices(fingerprint.getSheetKeys().get(sheet.getKey()), sheet.getValue());
+            invoices.put(sheet.getKey(), sheet.getValue());
+        }
+        return new ParsedWorkbook(metadata, invoices);
+    }
+
+    /**
+     * @param knownMetadata metadata to use instead of parsing the ROOT sheet, {@code null} parses it
+     * @param sheetFilter   invoice sheets to parse
+     */
+    @NonNull
+    private ParsedWorkbook parseWorkbook(@NonNull final Path path,
+                                         @Nullable final Metadata knownMetadata,
+                                         @NonNull final Predicate<String> sheetFilter) throws IOException {
+        return streaming
+            ? parseWorkbookStreaming(path, knownMetadata, sheetFilter)
+            : parseWorkbookInMemory(path, knownMetadata, sheetFilter);
+    }
+
+    @NonNull
+    private ParsedWorkbook parseWorkbookInMemory(@NonNull final Path path,
+                                                 @Nullable final Metadata knownMetadata,
+                                                 @NonNull final Predicate<String> sheetFilter) throws IOException {
         try (Workbook workbook = WorkbookFactory.create(Files.newInputStream(path))) {
-            final var formulaEvaluator = workbook.getCreationHelper().createFormulaEvaluator();
-            final var entityRowMapper = new EntityRowMapper(formulaEvaluator);
+            if (evaluationPolicy == FormulaEvaluationPolicy.WARM_UP) {
+                // Evaluated once, the results are then read as the cached ones
+                workbook.getCreationHelper().createFormulaEvaluator().evaluateAll();
+            }
+
+            // Formula evaluators are not thread-safe, each worker gets its own
+            final Supplier<EntityRowMapper> entityRowMapperFactory =
+                () -> new EntityRowMapper(workbook.getCreationHelper().createFormulaEvaluator(), evaluationPolicy);
 
-            final var metadata = parseMetadata(workbook, entityRowMapper);
-            final var sheetData = new HashMap<String, PdfData>();
+            final var metadata = knownMetadata != null
+                ? knownMetadata
+                : parseMetadata(workbook, entityRowMapperFactory.get());
 
             // Process all sheets except "ROOT"
+            final var sheetNames = new ArrayList<String>();
             for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
-                final var sheet = workbook.getSheetAt(i);
-                final var sheetName = sheet.getSheetName();
-                
-                if (!"ROOT".equals(sheetName)) {
-                    final var invoices = parseInvoices(workbook, entityRowMapper, metadata, sheetName);
-                    if (!invoices.isEmpty()) {
-                        sheetData.put(sheetName, new PdfData(invoices, metadata));
-                    }
+                final var sheetName = workbook.getSheetName(i);
+                if (!"ROOT".equals(sheetName) && sheetFilter.test(sheetName)) {
+                    sheetNames.add(sheetName);
+                }
+            }
+
+            return new ParsedWorkbook(metadata, parseSheets(sheetNames, entityRowMapperFactory,
+                (entityRowMapper, sheetName) -> parseInvoices(workbook, entityRowMapper, metadata, sheetName)));
+        }
+    }
+
+    @NonNull
+    private ParsedWorkbook parseWorkbookStreaming(@NonNull final Path path,
+                                                  @Nullable final Metadata knownMetadata,
+                                                  @NonNull final Predicate<String> sheetFilter) throws IOException {
+        try (var reader = new StreamingWorkbookReader(path)) {
+            // Formulas are not evaluated, the cached results are read instead
+            final Supplier<EntityRowMapper> entityRowMapperFactory =
+                () -> new EntityRowMapper(null, FormulaEvaluationPolicy.CACHED);
+
+            final var metadata = knownMetadata != null
+                ? knownMetadata
+                : parseMetadata(reader, entityRowMapperFactory.get());
+
+            // Process all sheets except "ROOT"
+            final var sheetNames = new ArrayList<String>();
+            for (var sheetName : reader.getSheetNames()) {
+                if (!"ROOT".equals(sheetName) && sheetFilter.test(sheetName)) {
+                    sheetNames.add(sheetName);
                 }
             }
 
-            return sheetData;
+            return new ParsedWorkbook(metadata, parseSheets(sheetNames, entityRowMapperFactory, (entityRowMapper, sheetName) -> {
+                final var invoiceCollector = new InvoiceCollector(entityRowMapper, metadata);
+                reader.readSheet(sheetName, invoiceCollector);
+                return invoiceCollector.getInvoices();
+            }));
+        }
+    }
+
+    /**
+     * Parses the invoice sheets either one after another or on a bounded pool of workers. The sheets only share the
+     * read-only metadata, every worker uses its own {@link EntityRowMapper}.
+     *
+     * @return invoices by sheet name in the order of the sheets
+     */
+    @NonNull
+    private Map<String, List<Invoice>> parseSheets(@NonNull final List<String> sheetNames,
+                                                   @NonNull final Supplier<EntityRowMapper> entityRowMapperFactory,
+                                                   @NonNull final SheetParser sheetParser) throws IOException {
+
+        final var sheetInvoices = new LinkedHashMap<String, List<Invoice>>();
+        final var workers = Math.min(parallelism, sheetNames.size());
+
+        if (workers <= 1) {
+            final var entityRowMapper = entityRowMapperFactory.get();
+            for (var sheetName : sheetNames) {
+                sheetInvoices.put(sheetName, sheetParser.parseInvoices(entityRowMapper, sheetName));
+            }
+            return sheetInvoices;
+        }
+
+        final var workerEntityRowMapper = ThreadLocal.withInitial(entityRowMapperFactory);
+        final var executor = Executors.newFixedThreadPool(workers);
+        try {
+            final var futures = new ArrayList<Future<List<Invoice>>>();
+            for (var sheetName : sheetNames) {
+                futures.add(executor.submit(() -> sheetParser.parseInvoices(workerEntityRowMapper.get(), sheetName)));
+            }
+            for (int i = 0; i < sheetNames.size(); i++) {
+                sheetInvoices.put(sheetNames.get(i), futures.get(i).get());
+            }
+            return sheetInvoices;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Parsing of invoice sheets was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException("Parsing of invoice sheets failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
         }
     }
 
@@ -66,20 +321,76 @@ public class DataParsingService {
             throw new IllegalArgumentException("Sheet ROOT not found");
         }
 
-        final var parties = new HashMap<String, Party>();
-        final var addresses = new HashMap<String, Address>();
-        final var accounts = new HashMap<String, Account>();
-        final var methods = new HashMap<String, Method>();
-        final var variables = new LinkedHashMap<String, String>();
+        final var metadataCollector = new MetadataCollector(entityRowMapper);
+        for (var row : sheet) {
+            metadataCollector.accept(entityRowMapper.snapshot(row));
+        }
+        return metadataCollector.build();
+    }
 
-        var section = Section.NONE;
-        final var header = new HashMap<String, Integer>();
+    @NonNull
+    private Metadata parseMetadata(@NonNull final StreamingWorkbookReader reader,
+                                   @NonNull final EntityRowMapper entityRowMapper) throws IOException {
 
+        final var metadataCollector = new MetadataCollector(entityRowMapper);
+        if (!reader.readSheet("ROOT", metadataCollector)) {
+            throw new IllegalArgumentException("Sheet ROOT not found");
+        }
+        return metadataCollector.build();
+    }
+
+    private static void resolveAddressReferences(@NonNull final Metadata metadata) {
+        metadata.getParties().values().forEach(party -> {
+            party.setAddress(metadata.getAddresses().get(party.getAddressReference()));
+        });
+    }
+
+    @NonNull
+    private List<Invoice> parseInvoices(@NonNull final Workbook workbook,
+                                        @NonNull final EntityRowMapper entityRowMapper,
+                                        @NonNull final Metadata metadata,
+                                        @Nullable final String sheetName) {
+
+        final var sheet = workbook.getSheet(sheetName);
+        if (sheet == null) {
+            System.out.println("Sheet '" + sheetName + "' not found, skipping...");
+            return new ArrayList<>();
+        }
+
+        final var invoiceCollector = new InvoiceCollector(entityRowMapper, metadata);
         for (var row : sheet) {
-            final var marker = entityRowMapper.getCellStringValue(row.getCell(1)); // column B
+            invoiceCollector.accept(entityRowMapper.snapshot(row));
+        }
+        return invoiceCollector.getInvoices();
+    }
+
+    /**
+     * Collects the ROOT sheet sections (parties, addresses, accounts, methods and variables) row by row.
+     */
+    private static final class MetadataCollector implements Consumer<SheetRow> {
+
+        private final EntityRowMapper entityRowMapper;
+
+        private final Map<String, Party> parties = new HashMap<>();
+        private final Map<String, Address> addresses = new HashMap<>();
+        private final Map<String, Account> accounts = new HashMap<>();
+        private final Map<String, Method> methods = new HashMap<>();
+        private final Map<String, String> variables = new LinkedHashMap<>();
+
+        private Section section = Section.NONE;
+        private boolean expectingHeader = true;
+        private Consumer<SheetRow> sectionRowConsumer = row -> { };
+
+        private MetadataCollector(@NonNull final EntityRowMapper entityRowMapper) {
+            this.entityRowMapper = entityRowMapper;
+        }
+
+        @Override
+        public void accept(@NonNull final SheetRow row) {
+            final var marker = row.get(1); // column B
 
             if (marker == null || marker.isBlank()) {
-                continue;
+                return;
             }
 
             // Section detection
@@ -93,131 +404,147 @@ public class DataParsingService {
             };
 
             if (marker.matches("PARTIES|ADDRESSES|ACCOUNTS|METHODS|VARIABLES")) {
-                header.clear();
-                continue;
-            }
-
-            // Header row
-            if (header.isEmpty()) {
-                for (var cell : row) {
-                    if (cell.getCellType() == org.apache.poi.ss.usermodel.CellType.STRING) {
-                        header.put(cell.getStringCellValue(), cell.getColumnIndex());
-                    }
-                }
-                continue;
+                expectingHeader = true;
+                return;
             }
 
-            if (section == Section.VARIABLES) {
-                final var key = entityRowMapper.getCellStringValue(row.getCell(header.get("KEY")));
-                final var value = entityRowMapper.getCellStringValue(row.getCell(header.get("VALUE")));
-                if (key != null) {
-                    variables.put(key, value);
-                }
-                continue;
+            // Header row, the columns are bound once per section
+            if (expectingHeader) {
+                expectingHeader = false;
+                sectionRowConsumer = switch (section) {
+                    case PARTIES -> collect(entityRowMapper.bindParty(row), Party::getId, parties);
+                    case ADDRESSES -> collect(entityRowMapper.bindAddress(row), Address::getId, addresses);
+                    case ACCOUNTS -> collect(entityRowMapper.bindAccount(row), Account::getId, accounts);
+                    case METHODS -> collect(entityRowMapper.bindPaymentMethod(row), Method::getId, methods);
+                    case VARIABLES -> collectVariables(entityRowMapper.createHeaderMap(row));
+                    case NONE -> dataRow -> { };
+                };
+                return;
             }
 
             // Data rows
-            final var id = entityRowMapper.getCellStringValue(row.getCell(header.get("ID")));
-            switch (section) {
-                case ADDRESSES -> addresses.put(id, entityRowMapper.mapToAddress(row, header));
-                case ACCOUNTS -> accounts.put(id, entityRowMapper.mapToAccount(row, header));
-                case METHODS -> methods.put(id, entityRowMapper.mapToPaymentMethod(row, header));
-                case PARTIES -> parties.put(id, entityRowMapper.mapToParty(row, header));
-            }
+            sectionRowConsumer.accept(row);
         }
 
-        final var metadata = new Metadata(parties, addresses, accounts, methods, variables);
-        resolveAddressReferences(metadata);
-        return metadata;
-    }
+        @NonNull
+        private static <T> Consumer<SheetRow> collect(@NonNull final RowBinding<T> binding,
+                                                      @NonNull final Function<T, String> idGetter,
+                                                      @NonNull final Map<String, T> target) {
+            return row -> {
+                final var entity = binding.map(row);
+                target.put(idGetter.apply(entity), entity);
+            };
+        }
 
-    private void resolveAddressReferences(@NonNull final Metadata metadata) {
-        metadata.getParties().values().forEach(party -> {
-            party.setAddress(metadata.getAddresses().get(party.getAddressReference()));
-        });
-    }
+        @NonNull
+        private Consumer<SheetRow> collectVariables(@NonNull final Map<String, Integer> header) {
+            final int keyColumn = header.getOrDefault("KEY", -1);
+            final int valueColumn = header.getOrDefault("VALUE", -1);
+            return row -> {
+                final var key = row.get(keyColumn);
+                if (key != null) {
+                    variables.put(key, row.get(valueColumn));
+                }
+            };
+        }
 
-    @NonNull
-    private List<Invoice> parseInvoices(@NonNull final Workbook workbook,
-                                        @NonNull final EntityRowMapper entityRowMapper,
-                                        @NonNull final Metadata metadata,
-                                        @Nullable final String sheetName) {
+        @NonNull
+        private Metadata build() {
+            final var metadata = new Metadata(parties, addresses, accounts, methods, variables);
+            resolveAddressReferences(metadata);
+            // Shared by all sheets (and possibly by parallel workers), so it must stay read-only from now on
+            return new Metadata(
+                Collections.unmodifiableMap(parties),
+                Collections.unmodifiableMap(addresses),
+                Collections.unmodifiableMap(accounts),
+                Collections.unmodifiableMap(methods),
+                Collections.unmodifiableMap(variables));
+        }
+    }
 
-        final var invoices = new ArrayList<Invoice>();
-        final var sheet = workbook.getSheet(sheetName);
-        if (sheet == null) {
-            System.out.println("Sheet '" + sheetName + "' not found, skipping...");
-            return invoices;
-        }
-        final var iterator = sheet.rowIterator();
-
-        Invoice currentInvoice = null;
-        Map<String, Integer> invoiceHeaderMap = null;
-        boolean invoicesAnchorFound = false;
-        Row lookahead = null;
-
-        while (true) {
-            Row row;
-            if (lookahead != null) {
-                row = lookahead;
-                lookahead = null;
-            } else {
-                if (!iterator.hasNext()) {
-                    break;
-                }
-                row = iterator.next();
-            }
+    /**
+     * Collects invoices of a single sheet row by row. Invoices start after the INVOICES anchor, each INVOICE header row
+     * is followed by the invoice data row, and the subsequent rows are its items.
+     */
+    private static final class InvoiceCollector implements Consumer<SheetRow> {
+
+        private final EntityRowMapper entityRowMapper;
+        private final Metadata metadata;
+
+        @Getter
+        private final List<Invoice> invoices = new ArrayList<>();
+
+        private Invoice currentInvoice;
+        private RowBinding<Invoice> invoiceBinding;
+        private RowBinding<Item> itemBinding;
+        private int invoiceColumn;
+        private Map<String, Integer> invoiceHeaderMap;
+        private boolean invoicesAnchorFound;
+        private boolean expectingInvoiceRow;
+
+        private InvoiceCollector(@NonNull final EntityRowMapper entityRowMapper, @NonNull final Metadata metadata) {
+            this.entityRowMapper = entityRowMapper;
+            this.metadata = metadata;
+        }
 
-            if (entityRowMapper.isRowEmpty(row)) {
-                continue;
+        @Override
+        public void accept(@NonNull final SheetRow row) {
+            if (row.isEmpty()) {
+                return;
             }
 
-            final var firstNonEmptyCell = entityRowMapper.getFirstNonEmptyCell(row);
-            final var firstNonEmpty = entityRowMapper.getCellStringValue(firstNonEmptyCell);
+            final var firstNonEmptyColumn = row.getFirstNonEmptyColumn();
+            final var firstNonEmpty = row.get(firstNonEmptyColumn);
 
             if (!invoicesAnchorFound) {
                 if ("INVOICES".equalsIgnoreCase(firstNonEmpty)) {
-                    System.out.println("Found invoices sheet at " + firstNonEmptyCell.getAddress().formatAsString());
+                    System.out.println("Found invoices sheet at " + row.formatAddress(firstNonEmptyColumn));
                     invoicesAnchorFound = true;
                 }
-                continue;
+                return;
+            }
+
+            if (expectingInvoiceRow) {
+                // First non-empty row after the header = first invoice data row
+                expectingInvoiceRow = false;
+                currentInvoice = invoiceBinding.map(row);
+                invoices.add(currentInvoice);
+                // Also parse first item from same row
+                final var item = itemBinding.map(row);
+                if (item != null) {
+                    currentInvoice.getItems().add(item);
+                }
+                return;
             }
 
             if ("INVOICE".equalsIgnoreCase(firstNonEmpty)) {
-                System.out.println("Found invoice at " + firstNonEmptyCell.getAddress().formatAsString());
-                // This is invoice header row
-                invoiceHeaderMap = entityRowMapper.createHeaderMap(row);
-                // Next row = first invoice data row
-                final var dataRow = entityRowMapper.findNextNonEmptyRow(iterator);
-                if (dataRow != null) {
-                    currentInvoice = entityRowMapper.mapToInvoice(dataRow, invoiceHeaderMap, metadata);
-                    invoices.add(currentInvoice);
-                    // Also parse first item from same row
-                    final var item = entityRowMapper.mapToItem(dataRow, invoiceHeaderMap);
-                    if (item != null) {
-                        currentInvoice.getItems().add(item);
-                    }
+                System.out.println("Found invoice at " + row.formatAddress(firstNonEmptyColumn));
+                // This is invoice header row, bound again only if it differs from the previous one
+                final var headerMap = entityRowMapper.createHeaderMap(row);
+                if (!headerMap.equals(invoiceHeaderMap)) {
+                    invoiceHeaderMap = headerMap;
+                    invoiceBinding = entityRowMapper.bindInvoice(row, metadata);
+                    itemBinding = entityRowMapper.bindItem(row);
+                    invoiceColumn = invoiceBinding.columnOf("INVOICE");
                 }
-                continue;
+                expectingInvoiceRow = true;
+                return;
             }
 
             if (currentInvoice != null) {
                 // Check if this row is a new invoice data row
-                final var possibleInvoiceNo = entityRowMapper.getCellStringValue(row.getCell(invoiceHeaderMap.get("INVOICE")));
-                if (possibleInvoiceNo != null && !possibleInvoiceNo.isBlank()) {
-                    lookahead = row; // next iteration will treat as new invoice
+                if (!row.isBlank(invoiceColumn)) {
+                    // The current invoice ends here, the next one starts with its own INVOICE header row
                     currentInvoice = null;
-                    continue;
+                    return;
                 }
 
                 // Otherwise, treat as an item row
-                final var item = entityRowMapper.mapToItem(row, invoiceHeaderMap);
+                final var item = itemBinding.map(row);
                 if (item != null) {
                     currentInvoice.getItems().add(item);
                 }
             }
         }
-
-        return invoices;
     }
 }
@@ -1,37 +1,106 @@
 package cz.czeckout.service;
 
 import java.io.File;
-import java.math.BigDecimal;
-import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.text.PDFTextStripper;
 import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
-import cz.czeckout.entity.Item;
-import tools.jackson.databind.module.SimpleModule;
-import tools.jackson.databind.ser.std.ToStringSerializer;
+import cz.czeckout.entity.Invoice;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectWriter;
+import tools.jackson.databind.SerializationFeature;
 import tools.jackson.dataformat.xml.XmlMapper;
 import tools.jackson.databind.json.JsonMapper;
-import cz.czeckout.entity.Invoices;
 import cz.czeckout.entity.PdfData;
-import lombok.RequiredArgsConstructor;
+import cz.czeckout.entity.VatRecap;
+import cz.czeckout.jackson.InvoiceExporter;
+import cz.czeckout.output.OutputSinkFactory;
 
-@RequiredArgsConstructor
 public class InvoiceProcessingService {
 
     private final DataParsingService dataParsingService;
     private final QRCodeService qrCodeService;
     private final PdfGenerationService pdfGenerationService;
-    private final JsonMapper jsonMapper;
-    private final XmlMapper xmlMapper;
+
+    /**
+     * Writers of the exports, see {@link InvoiceExporter}.
+     */
+    private final ObjectWriter jsonWriter;
+    private final ObjectWriter xmlWriter;
+
+    /**
+     * Maximum number of invoices whose totals and QR codes are computed at the same time, {@code 1} processes the
+     * invoices one after another.
+     */
+    private final int parallelism;
+
+    /**
+     * Opens the destination of the exports and the PDFs of every sheet.
+     */
+    private final OutputSinkFactory outputs;
+
+    /**
+     * @param compactExports whether the exports are written without indentation for production, indented for reading
+     *                       otherwise
+     */
+    public InvoiceProcessingService(@NonNull final DataParsingService dataParsingService,
+                                    @NonNull final QRCodeService qrCodeService,
+                                    @NonNull final PdfGenerationService pdfGenerationService,
+                                    @NonNull final JsonMapper jsonMapper,
+                                    @NonNull final XmlMapper xmlMapper,
+                                    final int parallelism,
+                                    @NonNull final OutputSinkFactory outputs,
+                                    final boolean compactExports) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.dataParsingService = dataParsingService;
+        this.qrCodeService = qrCodeService;
+        this.pdfGenerationService = pdfGenerationService;
+        this.jsonWriter = exportWriter(jsonMapper, compactExports);
+        this.xmlWriter = exportWriter(xmlMapper, compactExports);
+        this.parallelism = parallelism;
+        this.outputs = outputs;
+    }
+
+    @NonNull
+    private static ObjectWriter exportWriter(@NonNull final ObjectMapper mapper, final boolean compact) {
+        return compact
+            ? mapper.writer().without(SerializationFeature.INDENT_OUTPUT)
+            : mapper.writer().with(SerializationFeature.INDENT_OUTPUT);
+    }
 
     public void processInvoices() throws Exception {
         // Parse data from Excel
         final var path = Paths.get(getClass().getClassLoader().getResource("Invoices.xlsx").toURI());
         final var sheetDataMap = dataParsingService.parseWorkbook(path);
         
+        // Shared by all sheets, the invoices of a sheet are processed on it in parallel
+        final var pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        try {
+            processSheets(sheetDataMap, pool);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+
+        if (qrCodeService.getQrCache() != null) {
+            System.out.println("QR codes: " + qrCodeService.getQrCache());
+        }
+        System.out.println("Invoice processing completed successfully for all sheets!");
+    }
+
+    private void processSheets(@NonNull final Map<String, PdfData> sheetDataMap,
+                               @Nullable final ForkJoinPool pool) throws Exception {
         // Process each sheet separately
         for (var entry : sheetDataMap.entrySet()) {
             final var sheetName = entry.getKey();
@@ -43,70 +112,70 @@ public class InvoiceProcessingService {
             //Path outputDir = Paths.get(sheetName);
             //Files.createDirectories(outputDir);
             
-            // Process each invoice (calculate totals and generate QR codes)
-            processInvoiceData(pdfData);
-            
-            // Export to different formats in sheet-specific folder
-            exportToFormats(pdfData, sheetName);
-            
-            // Generate PDFs in sheet-specific folder
-            pdfGenerationService.generateIndividualPdfs(pdfData, sheetName);
-        }
-        
-        System.out.println("Invoice processing completed successfully for all sheets!");
-    }
+            try (var sink = outputs.open(sheetName)) {
+                // Process each invoice (calculate totals and generate QR codes) and export it to different formats in
+                // sheet-specific output as soon as it is processed
+                try (var exporter = new InvoiceExporter(jsonWriter, xmlWriter, sink)) {
+                    processInvoiceData(pdfData, pool, exporter);
+                    exporter.finish();
+                }
+                System.out.println("Exported invoices to JSON and XML formats in " + sheetName + " folder");
 
-    private void processInvoiceData(@NonNull final PdfData pdfData) {
-        for (var invoice : pdfData.getInvoices()) {
-            final var totalAmount = invoice.getItems().stream()
-                .map(Item::getTotalPrice)
-                .reduce(BigDecimal::add)
-                .orElse(BigDecimal.ZERO);
-
-            final var qr = qrCodeService.generateQRCode(
-                invoice, 
-                invoice.getAccount(), 
-                totalAmount, 
-                invoice.getMessage(), 
-                invoice.getDueDate(), 
-                invoice.getVs(), 
-                invoice.getSs(), 
-                invoice.getKs()
-            );
-            
-            // Set QR data on invoice
-            invoice.setQr(qr.getCode());
-            invoice.setQrSvg(qr.getSvg());
+                // Generate PDFs in sheet-specific output
+                pdfGenerationService.generateIndividualPdfs(pdfData, sink);
+            }
         }
-        
-        System.out.println("Processed invoices: " + pdfData.getInvoices().size());
     }
 
-    private void exportToFormats(@NonNull final PdfData pdfData, @NonNull final String sheetName) throws Exception {
-        final var invoices = new Invoices(pdfData.getInvoices());
+    /**
+     * Processes the invoices either one after another or on the pool. Every invoice only gets its own QR code set, so
+     * the result does not depend on the order the invoices are processed in. The invoices are exported in the order of
+     * the sheet, each once it and the ones before it are processed.
+     */
+    private void processInvoiceData(@NonNull final PdfData pdfData,
+                                    @Nullable final ForkJoinPool pool,
+                                    @NonNull final InvoiceExporter exporter) throws Exception {
+        final var invoices = pdfData.getInvoices();
+        if (pool == null || invoices.size() <= 1) {
+            for (var invoice : invoices) {
+                processInvoice(invoice);
+                exporter.write(invoice);
+            }
+        } else {
+            final var futures = new ArrayList<Future<Invoice>>(invoices.size());
+            for (var invoice : invoices) {
+                futures.add(pool.submit(() -> {
+                    processInvoice(invoice);
+                    return invoice;
+                }));
+            }
+            try {
+                for (var future : futures) {
+                    exporter.write(future.get());
+                }
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception exception) {
+                    throw exception;
+                }
+                throw e;
+            } finally {
+                // No-op for the processed ones
+                futures.forEach(future -> future.cancel(false));
+            }
+        }
 
-        // Create output directory for this sheet
-        final var outputDir = Paths.get("target/" + sheetName);
-        Files.createDirectories(outputDir);
+        System.out.println("Processed invoices: " + invoices.size());
+    }
 
-        final var bigDecimalAsString = new SimpleModule();
-        bigDecimalAsString.addSerializer(BigDecimal.class, ToStringSerializer.instance);
+    private void processInvoice(@NonNull final Invoice invoice) {
+        // Before the QR code, which pays its total
+        invoice.setRecap(VatRecap.of(invoice.getItems()));
 
-        // Export to different formats in sheet-specific folder
-        final var jsonPath = outputDir.resolve("invoices.json");
-        final var xmlPath =  outputDir.resolve("invoices.xml");
-        
-        // Export to JSON in sheet-specific folder
-        jsonMapper.writeValue(jsonPath.toFile(), invoices);
-        
-        // Export to XML in sheet-specific folder
-        xmlMapper.writeValue(xmlPath.toFile(), invoices);
-        
-        // Export to YAML (commented out in original, keeping same behavior)
-        // Path yamlPath = Paths.get(sheetName, "invoices.yaml");
-        // yamlMapper.writeValue(yamlPath.toFile(), invoices);
+        final var qr = qrCodeService.generateQRCode(invoice);
         
-        System.out.println("Exported invoices to JSON and XML formats in " + sheetName + " folder");
+        // Set QR data on invoice
+        invoice.setQr(qr.getCode());
+        invoice.setQrSvg(qr.getSvg());
     }
 
     private void readGeneratedPdf(@NonNull final String fileName) throws Exception {
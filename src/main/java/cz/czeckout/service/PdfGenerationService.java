@@ -1,134 +1,311 @@
 package cz.czeckout.service;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
-import java.net.URI;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
-import javax.xml.transform.Result;
-import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.sax.SAXResult;
-import javax.xml.transform.stream.StreamSource;
 
 import org.apache.fop.apps.FOPException;
-import org.apache.fop.apps.FOUserAgent;
-import org.apache.fop.apps.Fop;
-import org.apache.fop.apps.FopFactory;
-import org.apache.fop.apps.FopFactoryBuilder;
-import org.apache.fop.apps.MimeConstants;
-import org.apache.fop.configuration.ConfigurationException;
-import org.apache.fop.configuration.DefaultConfigurationBuilder;
 import org.checkerframework.checker.nullness.qual.NonNull;
+import org.xml.sax.SAXException;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import tools.jackson.databind.ObjectWriter;
+import tools.jackson.databind.SerializationFeature;
 import tools.jackson.dataformat.xml.XmlMapper;
+import cz.czeckout.Digests;
 import cz.czeckout.entity.Invoice;
-import cz.czeckout.entity.Invoices;
 import cz.czeckout.entity.PdfData;
-import lombok.RequiredArgsConstructor;
+import cz.czeckout.fop.PageSequenceJoiner;
+import cz.czeckout.fop.RenderManifest;
+import cz.czeckout.fop.RenderingEngine;
+import cz.czeckout.jackson.EntitySource;
+import cz.czeckout.output.DirectorySink;
+import cz.czeckout.output.OutputSink;
 
-@RequiredArgsConstructor
 public class PdfGenerationService {
 
+    /**
+     * The QR code is drawn from its payload, the raw SVG is left out of the entities passed to the layouts.
+     */
+    @JsonIgnoreProperties("qrSvg")
+    private abstract static class RenderedInvoice {
+    }
+
+    /**
+     * Mapper of the entities passed to the layouts, see {@link RenderedInvoice}.
+     */
     private final XmlMapper xmlMapper;
 
+    /**
+     * Writer of a single invoice, explicitly named "invoice" to match the XSLT.
+     */
+    private final ObjectWriter invoiceWriter;
+
+    /**
+     * Shared by all the sheets, the factory and the layouts are set up only once.
+     */
+    private final RenderingEngine renderingEngine;
+
+    /**
+     * Maximum number of individual PDFs rendered at the same time, {@code 1} renders them one after another.
+     */
+    private final int parallelism;
+
+    /**
+     * Whether the individual PDFs are rendered only if their invoice, the layout parameters or the rendering setup
+     * changed since they were rendered, see {@link RenderManifest}.
+     */
+    private final boolean incremental;
+
+    public PdfGenerationService(@NonNull final XmlMapper xmlMapper,
+                                @NonNull final RenderingEngine renderingEngine,
+                                final int parallelism,
+                                final boolean incremental) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.xmlMapper = xmlMapper.rebuild()
+            .addMixIn(Invoice.class, RenderedInvoice.class)
+            .disable(SerializationFeature.INDENT_OUTPUT)
+            .build();
+        this.invoiceWriter = this.xmlMapper.writer().withRootName("invoice");
+        this.renderingEngine = renderingEngine;
+        this.parallelism = parallelism;
+        this.incremental = incremental;
+    }
+
+    /**
+     * Renders all the invoices into one PDF. Every invoice is transformed by the single layout on its own and passed to
+     * FOP as a page sequence of the merged document, so neither the layout nor FOP holds more than one invoice at a
+     * time and the memory does not grow with the number of the invoices.
+     */
     public void generateMergedPdf(@NonNull final PdfData pdfData,
-                                  @NonNull final String outputFileName) throws ConfigurationException, IOException, FOPException, TransformerException {
-
-        final var invoices = new Invoices(pdfData.getInvoices());
-        final var fopFactory = createFopFactory();
-        final var foUserAgent = fopFactory.newFOUserAgent();
-
-        try (
-            final var out = Files.newOutputStream(Path.of(outputFileName));
-            final var xsl = getClass().getClassLoader().getResourceAsStream("invoices-batch-layout.xsl")
-        ) {
-            if (xsl == null) {
-                throw new IllegalStateException("XSL file is missing");
-            }
+                                  @NonNull final String outputFileName) throws IOException, FOPException, TransformerException {
+        final var outputFile = Path.of(outputFileName).toAbsolutePath();
+        try (var sink = new DirectorySink(outputFile.getParent())) {
+            generateMergedPdf(pdfData, sink, outputFile.getFileName().toString());
+        }
+    }
 
-            final var fop = fopFactory.newFop(MimeConstants.MIME_PDF, foUserAgent, out);
-            final var tf = createTransformerFactory();
-            final var transformer = tf.newTransformer(new StreamSource(xsl));
-            final var systemId = new File(".").toURI().toString();
-            final byte[] xmlBytes = xmlMapper.writeValueAsBytes(invoices);
-            final var src = new StreamSource(new ByteArrayInputStream(xmlBytes));
-            src.setSystemId(systemId);
-            final var res = new SAXResult(fop.getDefaultHandler());
-            res.setSystemId(systemId);
+    /**
+     * Renders all the invoices into one PDF written as the named entry of the sink, see
+     * {@link #generateMergedPdf(PdfData, String)}.
+     */
+    public void generateMergedPdf(@NonNull final PdfData pdfData,
+                                  @NonNull final OutputSink sink,
+                                  @NonNull final String entryName) throws IOException, FOPException, TransformerException {
+        final var invoices = pdfData.getInvoices();
+        if (invoices.isEmpty()) {
+            throw new IllegalArgumentException("No invoices to merge into " + entryName);
+        }
+
+        try (final var out = sink.newEntry(entryName)) {
+            final var fop = renderingEngine.newPdf(out);
+            final var transformer = renderingEngine.newSingleTransformer();
+            final var joiner = new PageSequenceJoiner(fop.getDefaultHandler());
+            final var res = new SAXResult(joiner);
+            res.setSystemId(new File(".").toURI().toString());
             pdfData.getMetadata().getVariables().forEach(transformer::setParameter);
-            transformer.transform(src, res);
+            for (var invoice : invoices) {
+                transformer.transform(new EntitySource(xmlMapper, invoiceWriter, invoice), res);
+            }
+            joiner.finish();
+            out.commit();
+        } catch (SAXException e) {
+            throw new TransformerException(e);
         }
     }
 
+    /**
+     * Renders every invoice into its own PDF named by the invoice, in the sheet folder of {@code target}.
+     */
     public void generateIndividualPdfs(@NonNull final PdfData pdfData, @NonNull final String outputDirectory) throws Exception {
-        final var invoices = new Invoices(pdfData.getInvoices());
-        final var fopFactory = createFopFactory();
-        final var tf = createTransformerFactory();
+        try (var sink = new DirectorySink(Path.of("target/" + outputDirectory))) {
+            generateIndividualPdfs(pdfData, sink);
+        }
+    }
+
+    /**
+     * Renders every invoice into its own PDF named by the invoice, written as an entry of the sink. When incremental
+     * and the sink writes into a directory, the PDFs up to date by the manifest of the directory are skipped, the other
+     * sinks get all the PDFs.
+     */
+    public void generateIndividualPdfs(@NonNull final PdfData pdfData, @NonNull final OutputSink sink) throws Exception {
+        final var invoices = pdfData.getInvoices();
+        final var outputNames = resolveOutputNames(invoices);
+        final var directory = sink.getDirectory();
+
+        if (!incremental || directory == null) {
+            generateSinglePdfs(pdfData, invoices, outputNames, sink);
+            return;
+        }
 
-        try (var xslStream = getClass().getClassLoader().getResourceAsStream("invoice-single-layout.xsl")) {
-            if (xslStream == null) {
-                throw new IllegalStateException("XSL invoice-single-layout.xsl missing");
+        final var manifest = RenderManifest.load(directory, renderingEngine.getVersion(),
+            pdfData.getMetadata().getVariables());
+        final var fingerprints = new LinkedHashMap<Path, String>();
+        final var currentFingerprints = new LinkedHashMap<Path, String>();
+        final var pendingInvoices = new ArrayList<Invoice>();
+        final var pendingNames = new ArrayList<String>();
+        for (int i = 0; i < invoices.size(); i++) {
+            final var outputPath = directory.resolve(outputNames.get(i));
+            final var fingerprint = manifest.fingerprint(digest(invoices.get(i)));
+            fingerprints.put(outputPath, fingerprint);
+            if (manifest.isCurrent(outputPath, fingerprint)) {
+                currentFingerprints.put(outputPath, fingerprint);
+            } else {
+                pendingInvoices.add(invoices.get(i));
+                pendingNames.add(outputNames.get(i));
             }
-            final var transformer = tf.newTransformer(new StreamSource(xslStream));
-            for (var inv : invoices.getInvoices()) {
-                generateSinglePdf(inv, pdfData, fopFactory, transformer, outputDirectory);
+        }
+
+        if (!pendingInvoices.isEmpty()) {
+            // Unrecorded before they are overwritten, so that a failed run never leaves a PDF recorded as up to date
+            manifest.store(currentFingerprints);
+            generateSinglePdfs(pdfData, pendingInvoices, pendingNames, sink);
+        }
+        manifest.store(fingerprints);
+        System.out.println("Rendered PDFs: %d, up to date: %d"
+            .formatted(pendingInvoices.size(), currentFingerprints.size()));
+    }
+
+    /**
+     * @return digest updated by the invoice as serialized for the layout, streamed without holding the bytes
+     */
+    @NonNull
+    private MessageDigest digest(@NonNull final Invoice invoice) {
+        final var digest = Digests.newDigest();
+        invoiceWriter.writeValue(new DigestOutputStream(OutputStream.nullOutputStream(), digest), invoice);
+        return digest;
+    }
+
+    /**
+     * Renders the invoices into the PDF entries of the names of the same index. With parallelism, each worker renders
+     * by its own transformer. The failure of the first failing invoice in the order of the sheet is reported, as if the
+     * invoices were rendered one after another.
+     */
+    private void generateSinglePdfs(@NonNull final PdfData pdfData,
+                                    @NonNull final List<Invoice> invoices,
+                                    @NonNull final List<String> outputNames,
+                                    @NonNull final OutputSink sink) throws Exception {
+        final var workers = Math.min(parallelism, invoices.size());
+        if (workers <= 1) {
+            final var transformer = renderingEngine.newSingleTransformer();
+            for (int i = 0; i < invoices.size(); i++) {
+                generateSinglePdf(invoices.get(i), pdfData, transformer, sink, outputNames.get(i));
+            }
+            return;
+        }
+
+        final var workerTransformer = ThreadLocal.withInitial(() -> {
+            try {
+                return renderingEngine.newSingleTransformer();
+            } catch (TransformerConfigurationException e) {
+                throw new IllegalStateException("Cannot create transformer of " + RenderingEngine.SINGLE_LAYOUT, e);
+            }
+        });
+        final var executor = Executors.newFixedThreadPool(workers);
+        final var futures = new ArrayList<Future<?>>(invoices.size());
+        try {
+            for (int i = 0; i < invoices.size(); i++) {
+                final var invoice = invoices.get(i);
+                final var outputName = outputNames.get(i);
+                futures.add(executor.submit(() -> {
+                    generateSinglePdf(invoice, pdfData, workerTransformer.get(), sink, outputName);
+                    return null;
+                }));
+            }
+            for (var future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception exception) {
+                throw exception;
             }
+            throw e;
+        } finally {
+            // Once one invoice fails, the caller closes the sink, so no worker may still write into it by then
+            futures.forEach(future -> future.cancel(true));
+            executor.shutdownNow();
+            awaitTermination(executor);
         }
     }
 
+    /**
+     * Waits for the workers to finish even if interrupted, the interrupt is then restored.
+     */
+    private static void awaitTermination(@NonNull final ExecutorService executor) {
+        var interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return name of the PDF of every invoice, the invoices whose names differ only in the replaced characters are
+     * rejected instead of overwriting each other's PDFs
+     */
+    @NonNull
+    private static List<String> resolveOutputNames(@NonNull final List<Invoice> invoices) {
+        final var outputNames = new ArrayList<String>(invoices.size());
+        final var invoiceByName = new HashMap<String, String>();
+        for (var invoice : invoices) {
+            // Clean filename
+            final var safeName = invoice.getName().replaceAll("[^a-zA-Z0-9.-]", "_");
+            final var outputName = safeName + ".pdf";
+            final var previous = invoiceByName.putIfAbsent(outputName, invoice.getName());
+            if (previous != null) {
+                throw new IllegalArgumentException(
+                    "Invoices %s and %s would both be written to %s".formatted(previous, invoice.getName(), outputName));
+            }
+            outputNames.add(outputName);
+        }
+        return outputNames;
+    }
+
     private void generateSinglePdf(@NonNull final Invoice invoice,
                                    @NonNull final PdfData pdfData,
-                                   @NonNull final FopFactory fopFactory,
                                    @NonNull final Transformer transformer,
-                                   @NonNull final String outputDirectory) throws Exception {
-        // Clean filename
-        final var safeName = invoice.getName().replaceAll("[^a-zA-Z0-9.-]", "_");
-        final var outputPath = Path.of("target/"  +outputDirectory, safeName + ".pdf");
-        Files.createDirectories(outputPath.getParent());
-        try (var out = Files.newOutputStream(outputPath)) {
-            final var fop = fopFactory.newFop(MimeConstants.MIME_PDF, fopFactory.newFOUserAgent(), out);
-
-            // IMPORTANT: Explicitly set the root name to "invoice" to match the XSLT
-            final byte[] xmlBytes = xmlMapper.writer()
-                .withRootName("invoice")
-                .writeValueAsBytes(invoice);
-
-            final var src = new StreamSource(new ByteArrayInputStream(xmlBytes));
+                                   @NonNull final OutputSink sink,
+                                   @NonNull final String outputName) throws Exception {
+        try (var out = sink.newEntry(outputName)) {
+            final var fop = renderingEngine.newPdf(out);
+
+            final var src = new EntitySource(xmlMapper, invoiceWriter, invoice);
             final var res = new SAXResult(fop.getDefaultHandler());
 
             pdfData.getMetadata().getVariables().forEach(transformer::setParameter);
             transformer.transform(src, res);
+            if (Thread.currentThread().isInterrupted()) {
+                // Cancelled after another invoice failed, the entry is discarded
+                throw new InterruptedException("Rendering of " + outputName + " was cancelled");
+            }
+            out.commit();
         }
     }
-
-    @NonNull
-    private FopFactory createFopFactory() throws ConfigurationException {
-        final var baseUri = new File("src/main/resources/").toURI();
-        final var configFile = new File("src/main/resources/fop.xconf");
-
-        final var builder = new FopFactoryBuilder(baseUri)
-            .setConfiguration(new DefaultConfigurationBuilder().buildFromFile(configFile));
-
-        return builder.build();
-    }
-
-    @NonNull
-    private TransformerFactory createTransformerFactory() {
-        // Force Saxon HE for XSLT 2.0 support.
-        final var tf = new net.sf.saxon.TransformerFactoryImpl();
-        // When you see a href, look in the resources folder... so the imports in XSLT can be relative from their location.
-        tf.setURIResolver((href, base) -> {
-            InputStream is = getClass().getClassLoader().getResourceAsStream(href);
-            return (is != null) ? new StreamSource(is) : null;
-        });
-        return tf;
-    }
 }
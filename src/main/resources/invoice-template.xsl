@@ -3,6 +3,7 @@
                 xmlns:fo="http://www.w3.org/1999/XSL/Format"
                 xmlns:xs="http://www.w3.org/2001/XMLSchema"
                 xmlns:this="urn:czechout:functions"
+                xmlns:czq="urn:czeckout:fop:qr"
                 version="2.0"
                 exclude-result-prefixes="xs this">
 
@@ -139,11 +140,10 @@
                     <fo:table-cell>
                         <fo:block xsl:use-attribute-sets="label" font-weight="bold">QR platba: </fo:block>
                         <fo:block margin-left="8pt">
-                            <fo:instream-foreign-object content-type="image/svg+xml"
-                                                        content-width="175px"
+                            <fo:instream-foreign-object content-width="175px"
                                                         content-height="175px"
                                                         scaling="uniform">
-                                <xsl:copy-of select="qrSvg/*"/>
+                                <czq:qr payload="{qr}"/>
                             </fo:instream-foreign-object>
                         </fo:block>
                     </fo:table-cell>
@@ -227,16 +227,15 @@
                 </fo:table-row>
             </fo:table-header>
             <fo:table-body>
-                <xsl:for-each-group select="items" group-by="vatRate">
-                    <xsl:sort select="current-grouping-key()" order="descending"/>
+                <xsl:for-each select="recap/rates">
                     <fo:table-row>
                         <fo:table-cell><fo:block/></fo:table-cell>
-                        <fo:table-cell xsl:use-attribute-sets="table-cell" border-bottom="1pt solid #EEEEEE" text-align="right"><fo:block><xsl:value-of select="this:format-bigdecimal(current-grouping-key(), '%')"/></fo:block></fo:table-cell>
-                        <fo:table-cell xsl:use-attribute-sets="table-cell" border-bottom="1pt solid #EEEEEE" text-align="right"><fo:block><xsl:value-of select="this:format-bigdecimal(sum(current-group()/basePrice), 'Kč')"/></fo:block></fo:table-cell>
-                        <fo:table-cell xsl:use-attribute-sets="table-cell" border-bottom="1pt solid #EEEEEE" text-align="right"><fo:block><xsl:value-of select="this:format-bigdecimal(sum(current-group()/vatPrice), 'Kč')"/></fo:block></fo:table-cell>
-                        <fo:table-cell xsl:use-attribute-sets="table-cell" border-bottom="1pt solid #EEEEEE" text-align="right"><fo:block><xsl:value-of select="this:format-bigdecimal(sum(current-group()/totalPrice), 'Kč')"/></fo:block></fo:table-cell>
+                        <fo:table-cell xsl:use-attribute-sets="table-cell" border-bottom="1pt solid #EEEEEE" text-align="right"><fo:block><xsl:value-of select="this:format-bigdecimal(vatRate, '%')"/></fo:block></fo:table-cell>
+                        <fo:table-cell xsl:use-attribute-sets="table-cell" border-bottom="1pt solid #EEEEEE" text-align="right"><fo:block><xsl:value-of select="this:format-bigdecimal(basePrice, 'Kč')"/></fo:block></fo:table-cell>
+                        <fo:table-cell xsl:use-attribute-sets="table-cell" border-bottom="1pt solid #EEEEEE" text-align="right"><fo:block><xsl:value-of select="this:format-bigdecimal(vatPrice, 'Kč')"/></fo:block></fo:table-cell>
+                        <fo:table-cell xsl:use-attribute-sets="table-cell" border-bottom="1pt solid #EEEEEE" text-align="right"><fo:block><xsl:value-of select="this:format-bigdecimal(totalPrice, 'Kč')"/></fo:block></fo:table-cell>
                     </fo:table-row>
-                </xsl:for-each-group>
+                </xsl:for-each>
             </fo:table-body>
         </fo:table>
 
@@ -249,7 +248,7 @@
                     </fo:table-cell>
                     <fo:table-cell font-size="16pt" font-weight="bold" padding-top="8pt" text-align="right">
                         <fo:block>
-                            <xsl:value-of select="this:format-bigdecimal(sum(items/totalPrice), 'Kč')"/>
+                            <xsl:value-of select="this:format-bigdecimal(recap/totalPrice, 'Kč')"/>
                         </fo:block>
                     </fo:table-cell>
                 </fo:table-row>
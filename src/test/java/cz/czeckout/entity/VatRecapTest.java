@@ -0,0 +1,104 @@
+package cz.czeckout.entity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class VatRecapTest {
+
+    @Test
+    void roundsEveryRateSoThatItAddsUp() {
+        final var recap = VatRecap.of(List.of(item("0.21", "10.004", "2.004", "12.008")));
+
+        assertEquals(1, recap.getRates().size());
+        assertRate(recap.getRates().get(0), "0.21", "10.00", "2.00", "12.00");
+        assertTotals(recap, "10.00", "2.00", "12.00");
+    }
+
+    @Test
+    void sumsItemsExactlyBeforeRounding() {
+        final var recap = VatRecap.of(List.of(
+            item("0.12", "10.005", "1.2006", "11.2056"),
+            item("0.12", "0.004", "0.0004", "0.0044")));
+
+        // 10.009 and 1.201 rounded, not 10.01 + 0.00 and 1.20 + 0.00
+        assertRate(recap.getRates().get(0), "0.12", "10.01", "1.20", "11.21");
+        assertTotals(recap, "10.01", "1.20", "11.21");
+    }
+
+    @Test
+    void mergesRatesOfDifferentScales() {
+        final var recap = VatRecap.of(List.of(
+            item("0.21", "100", "21", "121"),
+            item("0.210", "0.50", "0.11", "0.61"),
+            item("0.12", "10", "1.20", "11.20")));
+
+        assertEquals(2, recap.getRates().size());
+        // The highest rate first
+        assertRate(recap.getRates().get(0), "0.21", "100.50", "21.11", "121.61");
+        assertRate(recap.getRates().get(1), "0.12", "10", "1.20", "11.20");
+        assertTotals(recap, "110.50", "22.31", "132.81");
+    }
+
+    @Test
+    void countsItemsWithoutRateOnlyInTotals() {
+        final var recap = VatRecap.of(List.of(
+            item("0.21", "100", "21", "121"),
+            item(null, "5.005", "0", "5.005"),
+            item(null, "1", null, "1")));
+
+        assertEquals(1, recap.getRates().size());
+        assertRate(recap.getRates().get(0), "0.21", "100", "21", "121");
+        assertTotals(recap, "106.01", "21", "127.01");
+    }
+
+    @Test
+    void zeroForNoItems() {
+        final var recap = VatRecap.of(List.of());
+
+        assertTrue(recap.getRates().isEmpty());
+        assertTotals(recap, "0", "0", "0");
+    }
+
+    @Test
+    void invoicePaysRecapTotal() {
+        final var invoice = new Invoice();
+        invoice.setItems(List.of(item("0.21", "10.004", "2.004", "12.008")));
+
+        assertAmount("12.00", invoice.getTotalAmount());
+    }
+
+    private static Item item(final String vatRate, final String basePrice, final String vatPrice,
+                             final String totalPrice) {
+        final var item = new Item();
+        item.setVatRate(vatRate == null ? null : new BigDecimal(vatRate));
+        item.setBasePrice(new BigDecimal(basePrice));
+        item.setVatPrice(vatPrice == null ? null : new BigDecimal(vatPrice));
+        item.setTotalPrice(new BigDecimal(totalPrice));
+        return item;
+    }
+
+    private static void assertRate(final VatRecapRate rate, final String vatRate, final String basePrice,
+                                   final String vatPrice, final String totalPrice) {
+        assertAmount(vatRate, rate.getVatRate());
+        assertAmount(basePrice, rate.getBasePrice());
+        assertAmount(vatPrice, rate.getVatPrice());
+        assertAmount(totalPrice, rate.getTotalPrice());
+        assertAmount(totalPrice, rate.getBasePrice().add(rate.getVatPrice()));
+    }
+
+    private static void assertTotals(final VatRecap recap, final String basePrice, final String vatPrice,
+                                     final String totalPrice) {
+        assertAmount(basePrice, recap.getBasePrice());
+        assertAmount(vatPrice, recap.getVatPrice());
+        assertAmount(totalPrice, recap.getTotalPrice());
+    }
+
+    private static void assertAmount(final String expected, final BigDecimal actual) {
+        assertEquals(0, new BigDecimal(expected).compareTo(actual), () -> expected + " != " + actual);
+    }
+}
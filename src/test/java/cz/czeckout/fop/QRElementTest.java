@@ -0,0 +1,72 @@
+package cz.czeckout.fop;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.file.Path;
+
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.junit.jupiter.api.Test;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.RGBLuminanceSource;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeReader;
+import cz.czeckout.generator.QRCache;
+
+class QRElementTest {
+
+    private static final String PAYLOAD = "SPD*1.0*ACC:CZ7908000000002000145399*AM:2240.62*CC:CZK*X-VS:1000";
+
+    private static final String DOCUMENT = """
+        <fo:root xmlns:fo="http://www.w3.org/1999/XSL/Format">
+            <fo:layout-master-set>
+                <fo:simple-page-master master-name="A6" page-height="14.8cm" page-width="10.5cm" margin="1cm">
+                    <fo:region-body/>
+                </fo:simple-page-master>
+            </fo:layout-master-set>
+            <fo:page-sequence master-reference="A6">
+                <fo:flow flow-name="xsl-region-body">
+                    <fo:block>
+                        <fo:instream-foreign-object content-width="175px" content-height="175px">
+                            <czq:qr xmlns:czq="urn:czeckout:fop:qr" payload="%s"/>
+                        </fo:instream-foreign-object>
+                    </fo:block>
+                </fo:flow>
+            </fo:page-sequence>
+        </fo:root>
+        """.formatted(PAYLOAD);
+
+    @Test
+    void drawsQRCodeFromSharedCache() throws Exception {
+        final var qrCache = new QRCache(16);
+        // Encoded ahead, the way the invoices are
+        qrCache.get(PAYLOAD);
+        final var engine = new RenderingEngine(Path.of("src/main/resources"), qrCache);
+
+        final var pdf = new ByteArrayOutputStream();
+        final var fop = engine.newPdf(pdf);
+        TransformerFactory.newInstance().newTransformer()
+            .transform(new StreamSource(new StringReader(DOCUMENT)), new SAXResult(fop.getDefaultHandler()));
+
+        assertEquals(1, qrCache.getMisses());
+        assertTrue(qrCache.getHits() > 0, qrCache::toString);
+        assertEquals(PAYLOAD, decode(pdf.toByteArray()));
+    }
+
+    private static String decode(final byte[] pdf) throws Exception {
+        try (var document = PDDocument.load(pdf)) {
+            final var image = new PDFRenderer(document).renderImageWithDPI(0, 150);
+            final var pixels = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+            final var source = new RGBLuminanceSource(image.getWidth(), image.getHeight(), pixels);
+            return new QRCodeReader().decode(new BinaryBitmap(new HybridBinarizer(source))).getText();
+        }
+    }
+}
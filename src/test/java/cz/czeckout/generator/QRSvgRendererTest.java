@@ -0,0 +1,83 @@
+package cz.czeckout.generator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+
+class QRSvgRendererTest {
+
+    private static final Pattern PATH_DATA = Pattern.compile("<path fill=\"black\" d=\"([^\"]*)\"/>");
+
+    private static final Pattern COMMAND = Pattern.compile("([Mmhvz])(-?\\d+)?(?: (-?\\d+))?");
+
+    @Test
+    void fillsEveryDarkModule() throws WriterException {
+        final var matrix = QREncoder.encode("SPD*1.0*ACC:CZ7908000000002000145399*AM:2240.62*CC:CZK");
+        final var svg = QRSvgRenderer.render(matrix);
+
+        assertTrue(svg.startsWith("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"%d\" height=\"%d\""
+            .formatted(matrix.getWidth(), matrix.getHeight())), svg);
+        assertEquals(matrix, paint(svg, matrix.getWidth(), matrix.getHeight()));
+    }
+
+    @Test
+    void mergesRunsOfRow() {
+        final var matrix = new BitMatrix(8, 2);
+        matrix.setRegion(1, 0, 3, 1);
+        matrix.setRegion(6, 0, 2, 1);
+        matrix.set(0, 1);
+
+        final var svg = QRSvgRenderer.render(matrix);
+        assertTrue(svg.contains("d=\"M1 0h3v1h-3zm5 0h2v1h-2zM0 1h1v1h-1z\""), svg);
+        assertEquals(matrix, paint(svg, 8, 2));
+    }
+
+    /**
+     * Fills the rectangles of the path, each one module high, and fails on any other shape.
+     */
+    private static BitMatrix paint(final String svg, final int width, final int height) {
+        final var pathData = PATH_DATA.matcher(svg);
+        assertTrue(pathData.find(), svg);
+
+        final var matrix = new BitMatrix(width, height);
+        final var commands = COMMAND.matcher(pathData.group(1));
+        int x = 0;
+        int y = 0;
+        int length = 0;
+        int position = 0;
+        while (commands.find()) {
+            assertEquals(position, commands.start(), pathData.group(1));
+            position = commands.end();
+            switch (commands.group(1)) {
+                case "M" -> {
+                    x = Integer.parseInt(commands.group(2));
+                    y = Integer.parseInt(commands.group(3));
+                }
+                case "m" -> {
+                    x += Integer.parseInt(commands.group(2));
+                    y += Integer.parseInt(commands.group(3));
+                }
+                case "h" -> {
+                    // The top edge to the right, the bottom one back to the left
+                    final var distance = Integer.parseInt(commands.group(2));
+                    if (distance > 0) {
+                        length = distance;
+                    } else {
+                        assertEquals(-length, distance);
+                    }
+                }
+                case "v" -> assertEquals("1", commands.group(2));
+                case "z" -> matrix.setRegion(x, y, length, 1);
+                default -> throw new AssertionError(commands.group());
+            }
+        }
+        assertEquals(pathData.group(1).length(), position);
+        return matrix;
+    }
+}
@@ -0,0 +1,123 @@
+package cz.czeckout.generator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+
+import cz.czeckout.entity.Account;
+
+class SpaydEncoderTest {
+
+    private static final String IBAN = "CZ79 0800 0000 0020 0014 5399";
+
+    private static final String HEADER = "SPD*1.0*ACC:CZ7908000000002000145399";
+
+    private final SpaydEncoder encoder = new SpaydEncoder();
+
+    @Test
+    void encodesAllFields() {
+        assertEquals(HEADER + "*AM:2240.62*CC:CZK*MSG:Faktura 1*DT:20240214*X-VS:1000*X-SS:7*X-KS:0308",
+            encoder.encode(account(IBAN), new BigDecimal("2240.62"), "Faktura 1", LocalDate.of(2024, 2, 14),
+                "1000", "7", "0308"));
+    }
+
+    @Test
+    void leavesOutBlankFields() {
+        assertEquals(HEADER, encoder.encode(account(IBAN), null, " ", null, null, "", null));
+    }
+
+    @Test
+    void escapesSeparator() {
+        assertEquals(HEADER + "*MSG:a%2Ab%2A%2A", encode("a*b**"));
+    }
+
+    @Test
+    void removesDiacritics() {
+        assertEquals(HEADER + "*MSG:Prilis zlutoucky kun", encode("Příliš žluťoučký kůň"));
+    }
+
+    @Test
+    void cutsMessageToLimit() {
+        final var sixty = "x".repeat(60);
+        assertEquals(HEADER + "*MSG:" + sixty, encode(sixty));
+        assertEquals(HEADER + "*MSG:" + sixty, encode(sixty + "yz"));
+        // Counted before the escaping and without the diacritics
+        assertEquals(HEADER + "*MSG:" + "%2A".repeat(60), encode("*".repeat(61)));
+        assertEquals(HEADER + "*MSG:" + "e".repeat(60), encode("é".repeat(61)));
+    }
+
+    @Test
+    void roundsAmountHalfUp() {
+        assertEquals(HEADER + "*AM:121.00*CC:CZK", encodeAmount("121.00000000000001"));
+        assertEquals(HEADER + "*AM:0.13*CC:CZK", encodeAmount("0.125"));
+        assertEquals(HEADER + "*AM:0.12*CC:CZK", encodeAmount("0.1249"));
+        assertEquals(HEADER + "*AM:100*CC:CZK", encodeAmount("100"));
+        assertEquals(HEADER + "*AM:0.5*CC:CZK", encodeAmount("0.5"));
+    }
+
+    @Test
+    void leavesOutAmountOverLimit() {
+        assertEquals(HEADER + "*AM:9999999.99*CC:CZK", encodeAmount("9999999.99"));
+        assertEquals(HEADER + "*AM:1000000000*CC:CZK", encodeAmount("1000000000"));
+        assertEquals(HEADER, encodeAmount("10000000.00"));
+        assertEquals(HEADER, encodeAmount("10000000000"));
+    }
+
+    @Test
+    void leavesOutNegativeAmount() {
+        assertEquals(HEADER, encodeAmount("-121.00"));
+    }
+
+    @Test
+    void stripsSymbolsToDigits() {
+        assertEquals(HEADER + "*X-VS:202401*X-SS:1*X-KS:0308",
+            encoder.encode(account(IBAN), null, null, null, "2024/01", " 1 ", "KS 0308"));
+        assertEquals(HEADER, encoder.encode(account(IBAN), null, null, null, "n/a", null, null));
+    }
+
+    @Test
+    void leavesOutSymbolOverLimit() {
+        assertEquals(HEADER + "*X-VS:1234567890",
+            encoder.encode(account(IBAN), null, null, null, "1234567890", null, null));
+        assertEquals(HEADER, encoder.encode(account(IBAN), null, null, null, "12345678901", null, null));
+        assertEquals(HEADER, encoder.encode(account(IBAN), null, null, null, "123-456-789-01", null, null));
+    }
+
+    @Test
+    void rejectsPayloadOverCapacity() {
+        // "SPD*1.0*ACC:" takes 12 bytes
+        final var fitting = "A".repeat(SpaydEncoder.MAX_PAYLOAD_BYTES - 12);
+        assertEquals(SpaydEncoder.MAX_PAYLOAD_BYTES,
+            encoder.encode(account(fitting), null, null, null, null, null, null).length());
+
+        final var overflowing = account(fitting + "A");
+        assertThrows(IllegalArgumentException.class,
+            () -> encoder.encode(overflowing, null, null, null, null, null, null));
+    }
+
+    @Test
+    void reusesBufferAfterRejectedPayload() {
+        final var overflowing = account("A".repeat(SpaydEncoder.MAX_PAYLOAD_BYTES));
+        assertThrows(IllegalArgumentException.class,
+            () -> encoder.encode(overflowing, null, null, null, null, null, null));
+        assertEquals(HEADER, encoder.encode(account(IBAN), null, null, null, null, null, null));
+    }
+
+    private String encode(final String message) {
+        return encoder.encode(account(IBAN), null, message, null, null, null, null);
+    }
+
+    private String encodeAmount(final String amount) {
+        return encoder.encode(account(IBAN), new BigDecimal(amount), null, null, null, null, null);
+    }
+
+    private static Account account(final String iban) {
+        final var account = new Account();
+        account.setIban(iban);
+        return account;
+    }
+}
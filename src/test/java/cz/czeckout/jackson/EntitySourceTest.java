@@ -0,0 +1,256 @@
+package cz.czeckout.jackson;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.transform.Source;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.jupiter.api.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.helpers.DefaultHandler;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import tools.jackson.databind.ObjectWriter;
+import tools.jackson.dataformat.xml.XmlMapper;
+import cz.czeckout.entity.Address;
+import cz.czeckout.entity.Invoice;
+import cz.czeckout.entity.Item;
+import cz.czeckout.entity.Party;
+import cz.czeckout.fop.RenderingEngine;
+
+class EntitySourceTest {
+
+    /**
+     * Left out like for the layouts, the raw SVG is markup.
+     */
+    @JsonIgnoreProperties("qrSvg")
+    private abstract static class RenderedInvoice {
+    }
+
+    @Test
+    void passesSameEventsAsSerializedXml() throws Exception {
+        // Nulls included, written as empty elements
+        final var mapper = XmlMapper.builder()
+            .addModule(new BigDecimalModule())
+            .addMixIn(Invoice.class, RenderedInvoice.class)
+            .defaultUseWrapper(false)
+            .build();
+        final var writer = mapper.writer().withRootName("invoice");
+        final var identity = TransformerFactory.newInstance().newTransformer();
+
+        final var expected = transform(identity, serialized(writer, invoice()));
+        final var actual = transform(identity, new EntitySource(mapper, writer, invoice()));
+
+        assertEquals(expected, actual);
+        assertTrue(actual.contains("characters Faktura <1> & \"2\" 'x'"), actual::toString);
+        assertTrue(actual.contains("start |ks|ks []"), actual::toString);
+        assertTrue(actual.contains("startPrefix xsi=http://www.w3.org/2001/XMLSchema-instance"), actual::toString);
+    }
+
+    @Test
+    void rendersSameFormattingObjectsAsSerializedXml() throws Exception {
+        final var mapper = XmlMapper.builder()
+            .addModule(new BigDecimalModule())
+            .addMixIn(Invoice.class, RenderedInvoice.class)
+            .defaultUseWrapper(false)
+            .changeDefaultPropertyInclusion(incl -> incl.withValueInclusion(JsonInclude.Include.NON_NULL))
+            .build();
+        final var writer = mapper.writer().withRootName("invoice");
+        final var engine = new RenderingEngine(Path.of("src/main/resources"));
+
+        final var expected = transform(engine.newSingleTransformer(), serialized(writer, invoice()));
+        final var actual = transform(engine.newSingleTransformer(), new EntitySource(mapper, writer, invoice()));
+
+        assertEquals(expected, actual);
+        assertTrue(actual.stream().anyMatch(event -> event.startsWith("start http://www.w3.org/1999/XSL/Format|")),
+            actual::toString);
+    }
+
+    @Test
+    void writerPassesNamespacesAttributesAndEscapedText() throws Exception {
+        final var text = new StringWriter();
+        final var textWriter = XMLOutputFactory.newInstance().createXMLStreamWriter(text);
+        writeSample(textWriter);
+        textWriter.close();
+        final var expected = new Recorder();
+        final var parserFactory = SAXParserFactory.newInstance();
+        parserFactory.setNamespaceAware(true);
+        final var reader = parserFactory.newSAXParser().getXMLReader();
+        reader.setContentHandler(expected);
+        reader.parse(new InputSource(new StringReader(text.toString())));
+
+        final var actual = new Recorder();
+        final var streamWriter = new ContentHandlerStreamWriter(actual);
+        writeSample(streamWriter);
+
+        assertEquals(expected.finish(), actual.finish());
+    }
+
+    private static void writeSample(final XMLStreamWriter writer) throws XMLStreamException {
+        writer.writeStartDocument();
+        writer.writeStartElement("a", "root", "urn:a");
+        writer.writeNamespace("a", "urn:a");
+        writer.writeDefaultNamespace("urn:default");
+        writer.writeAttribute("plain", "1 < 2 & \"3\"");
+        writer.writeAttribute("a", "urn:a", "qualified", "x");
+        writer.writeStartElement("urn:default", "child");
+        writer.writeCharacters("text <with> & markup ");
+        writer.writeCharacters("ščř".toCharArray(), 0, 3);
+        writer.writeEndElement();
+        writer.writeEmptyElement("b", "empty", "urn:b");
+        writer.writeNamespace("b", "urn:b");
+        writer.writeAttribute("value", "");
+        writer.writeStartElement("urn:default", "blank");
+        writer.writeEndElement();
+        writer.writeComment("dropped");
+        writer.writeEndElement();
+        writer.writeEndDocument();
+    }
+
+    private static Source serialized(final ObjectWriter writer, final Object value) {
+        return new StreamSource(new ByteArrayInputStream(writer.writeValueAsBytes(value)));
+    }
+
+    private static List<String> transform(final Transformer transformer, final Source source) throws Exception {
+        final var recorder = new Recorder();
+        transformer.transform(source, new SAXResult(recorder));
+        return recorder.finish();
+    }
+
+    private static Invoice invoice() {
+        final var address = new Address();
+        address.setId("A1");
+        address.setStreet("Náměstí Míru");
+        address.setHouseNumber("1/2");
+        address.setCity("Praha");
+        address.setZipCode("120 00");
+
+        final var issuer = new Party();
+        issuer.setId("P1");
+        issuer.setName("Dodavatel & syn s.r.o.");
+        issuer.setVat("12345678");
+        issuer.setAddress(address);
+
+        final var item = new Item();
+        item.setName("Služby <hodinové>");
+        item.setUnit("");
+        item.setQuantity(new BigDecimal("1.5"));
+        item.setUnitPrice(new BigDecimal("1000.00"));
+        item.setBasePrice(new BigDecimal("1500.00"));
+        item.setVatRate(new BigDecimal("0.21"));
+        item.setVatPrice(new BigDecimal("315.00"));
+        item.setTotalPrice(new BigDecimal("1815.00"));
+
+        final var invoice = new Invoice();
+        invoice.setName("Faktura <1> & \"2\" 'x'");
+        invoice.setIssuer(issuer);
+        invoice.setIssueDate(LocalDate.of(2024, 2, 14));
+        invoice.setDueDate(LocalDate.of(2024, 2, 28));
+        invoice.setVs("2024001");
+        invoice.setKs("");
+        invoice.setMessage("Příliš žluťoučký kůň ]]> úpěl");
+        invoice.getItems().add(item);
+        return invoice;
+    }
+
+    /**
+     * Records the content events as text. Adjacent characters are merged and the ends of the prefix mappings sorted,
+     * as parsers split and order them differently.
+     */
+    private static final class Recorder extends DefaultHandler {
+
+        private final List<String> events = new ArrayList<>();
+        private final StringBuilder characters = new StringBuilder();
+        private final TreeSet<String> endedPrefixes = new TreeSet<>();
+
+        @Override
+        public void startDocument() {
+            events.add("startDocument");
+        }
+
+        @Override
+        public void endDocument() {
+            flush();
+            events.add("endDocument");
+        }
+
+        @Override
+        public void startPrefixMapping(final String prefix, final String uri) {
+            flush();
+            events.add("startPrefix " + prefix + "=" + uri);
+        }
+
+        @Override
+        public void endPrefixMapping(final String prefix) {
+            flushCharacters();
+            endedPrefixes.add(prefix);
+        }
+
+        @Override
+        public void startElement(final String uri, final String localName, final String qName, final Attributes atts) {
+            flush();
+            final var attributes = new ArrayList<String>();
+            for (int i = 0; i < atts.getLength(); i++) {
+                attributes.add(atts.getURI(i) + "|" + atts.getLocalName(i) + "|" + atts.getQName(i) + "="
+                    + atts.getValue(i));
+            }
+            events.add("start " + uri + "|" + localName + "|" + qName + " " + attributes);
+        }
+
+        @Override
+        public void endElement(final String uri, final String localName, final String qName) {
+            flush();
+            events.add("end " + uri + "|" + localName + "|" + qName);
+        }
+
+        @Override
+        public void characters(final char[] ch, final int start, final int length) {
+            flushPrefixes();
+            characters.append(ch, start, length);
+        }
+
+        private List<String> finish() {
+            flush();
+            return events;
+        }
+
+        private void flush() {
+            flushCharacters();
+            flushPrefixes();
+        }
+
+        private void flushCharacters() {
+            if (!characters.isEmpty()) {
+                events.add("characters " + characters);
+                characters.setLength(0);
+            }
+        }
+
+        private void flushPrefixes() {
+            if (!endedPrefixes.isEmpty()) {
+                events.add("endPrefixes " + endedPrefixes);
+                endedPrefixes.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package cz.czeckout.jackson;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import cz.czeckout.output.DirectorySink;
+import tools.jackson.databind.json.JsonMapper;
+
+class InvoiceExporterTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void discardsBothEntriesIfNotOpened() throws IOException {
+        final var jsonWriter = JsonMapper.builder().build().writer();
+        try (var sink = new DirectorySink(directory)) {
+            // Not an XML writer, fails once the XML entry is open
+            assertThrows(ClassCastException.class, () -> new InvoiceExporter(jsonWriter, jsonWriter, sink));
+        }
+
+        try (var files = Files.list(directory)) {
+            assertEquals(List.of(), files.toList());
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package cz.czeckout.output;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OutputSinkTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void memorySinkKeepsOnlyCommittedEntries() throws IOException {
+        final var sink = new MemorySink();
+        writeCommittedAndDiscarded(sink);
+
+        assertEquals(1, sink.getEntries().size());
+        assertEquals("complete", new String(sink.getEntry("kept.txt"), StandardCharsets.US_ASCII));
+        assertNull(sink.getEntry("failed.pdf"));
+    }
+
+    @Test
+    void directorySinkKeepsOnlyCommittedEntries() throws IOException {
+        final var sheet = directory.resolve("S1");
+        try (var sink = new DirectorySink(sheet)) {
+            // A discarded entry does not leave the previous file behind either
+            Files.writeString(sheet.resolve("failed.pdf"), "previous");
+            writeCommittedAndDiscarded(sink);
+        }
+
+        assertEquals("complete", Files.readString(sheet.resolve("kept.txt")));
+        assertFalse(Files.exists(sheet.resolve("failed.pdf")));
+    }
+
+    @Test
+    void directorySinkRejectsPaths() throws IOException {
+        try (var sink = new DirectorySink(directory)) {
+            assertThrows(IllegalArgumentException.class, () -> sink.newEntry("../escaped.pdf"));
+            assertThrows(IllegalArgumentException.class, () -> sink.newEntry("sub/nested.pdf"));
+        }
+    }
+
+    @Test
+    void zipSinkKeepsOnlyCommittedEntries() throws IOException {
+        final var file = directory.resolve("S1.zip");
+        try (var sink = new ZipSink(file)) {
+            writeCommittedAndDiscarded(sink);
+        }
+
+        final var entries = readZip(file);
+        assertEquals(1, entries.size());
+        assertEquals("complete", new String(entries.get("kept.txt"), StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void zipSinkCollectsConcurrentEntries() throws Exception {
+        final var file = directory.resolve("S1.zip");
+        final var expected = new TreeMap<String, byte[]>();
+        final var random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            final var content = new byte[random.nextInt(50_000)];
+            random.nextBytes(content);
+            expected.put("%03d.%s".formatted(i, i % 2 == 0 ? "pdf" : "xml"), content);
+        }
+
+        final var executor = Executors.newFixedThreadPool(8);
+        // Spilling the entries over 16 KB into temporary files
+        try (var sink = new ZipSink(file, 16 * 1024)) {
+            final var tasks = new ArrayList<Callable<Void>>();
+            expected.forEach((name, content) -> tasks.add(() -> {
+                try (var out = sink.newEntry(name)) {
+                    // In pieces, the way the writers fill their buffers
+                    for (int offset = 0; offset < content.length; offset += 1000) {
+                        out.write(content, offset, Math.min(1000, content.length - offset));
+                    }
+                    out.commit();
+                }
+                return null;
+            }));
+            for (var future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        final var entries = readZip(file);
+        assertEquals(expected.keySet(), entries.keySet());
+        expected.forEach((name, content) -> assertArrayEquals(content, entries.get(name), name));
+        try (var zip = new ZipFile(file.toFile())) {
+            assertEquals(ZipEntry.STORED, zip.getEntry("000.pdf").getMethod());
+            assertEquals(ZipEntry.DEFLATED, zip.getEntry("001.xml").getMethod());
+        }
+    }
+
+    @Test
+    void entryRejectsWritesOnceClosed() throws IOException {
+        final var sink = new MemorySink();
+        final var out = sink.newEntry("closed.txt");
+        out.commit();
+        out.close();
+        // Closed again by a writer, the entry is handed over once
+        out.close();
+
+        assertThrows(IOException.class, () -> out.write(1));
+        assertEquals(0, sink.getEntry("closed.txt").length);
+    }
+
+    private static void writeCommittedAndDiscarded(final OutputSink sink) throws IOException {
+        try (var out = sink.newEntry("kept.txt")) {
+            out.write("complete".getBytes(StandardCharsets.US_ASCII));
+            out.commit();
+        }
+        assertThrows(IllegalStateException.class, () -> {
+            try (var out = sink.newEntry("failed.pdf")) {
+                out.write("%PDF-1.4 trunc".getBytes(StandardCharsets.US_ASCII));
+                throw new IllegalStateException("Rendering failed");
+            }
+        });
+    }
+
+    private static Map<String, byte[]> readZip(final Path file) throws IOException {
+        final var entries = new TreeMap<String, byte[]>();
+        try (var zip = new ZipFile(file.toFile())) {
+            for (var entry : zip.stream().toList()) {
+                try (var in = zip.getInputStream(entry)) {
+                    // Read through the checksum verification
+                    entries.put(entry.getName(), in.readAllBytes());
+                }
+            }
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,80 @@
+package cz.czeckout.parser;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+/**
+ * Microbenchmark of decoding price cells: the former string round trip with regular expressions against the typed
+ * decoders. Run manually, e.g. from the IDE, it is not part of the test suite.
+ */
+public class CellDecodingBenchmark {
+
+    private static final int CELLS = 50_000;
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int MEASURED_ROUNDS = 20;
+
+    public static void main(final String[] args) throws Exception {
+        try (var workbook = new XSSFWorkbook()) {
+            final var sheet = workbook.createSheet();
+            final var numericCells = new ArrayList<Cell>();
+            final var stringCells = new ArrayList<Cell>();
+            for (int i = 0; i < CELLS; i++) {
+                final var row = sheet.createRow(i);
+                final var numeric = row.createCell(0);
+                numeric.setCellValue(1234.5 + i);
+                numericCells.add(numeric);
+                final var string = row.createCell(1);
+                string.setCellValue((1000 + i) + " 234.50 CZK");
+                stringCells.add(string);
+            }
+
+            final var reader = new ExcelCellReader(workbook.getCreationHelper().createFormulaEvaluator());
+
+            run("NUMERIC legacy", numericCells, cell -> legacyMonetaryValue(reader.getCellStringValue(cell)));
+            run("NUMERIC typed ", numericCells, reader::parseMonetaryValue);
+            run("STRING  legacy", stringCells, cell -> legacyMonetaryValue(reader.getCellStringValue(cell)));
+            run("STRING  typed ", stringCells, reader::parseMonetaryValue);
+        }
+    }
+
+    private static void run(final String name, final List<Cell> cells, final Decoder decoder) {
+        var checksum = 0L;
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            checksum += decodeAll(cells, decoder);
+        }
+        final var start = System.nanoTime();
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            checksum += decodeAll(cells, decoder);
+        }
+        final var nanosPerCell = (double) (System.nanoTime() - start) / MEASURED_ROUNDS / cells.size();
+        System.out.printf("%s: %8.1f ns/cell (checksum %d)%n", name, nanosPerCell, checksum);
+    }
+
+    private static long decodeAll(final List<Cell> cells, final Decoder decoder) {
+        var checksum = 0L;
+        for (var cell : cells) {
+            checksum += decoder.decode(cell).unscaledValue().longValue();
+        }
+        return checksum;
+    }
+
+    /**
+     * The former {@code ExcelCellReader#parseMonetaryValue} implementation.
+     */
+    private static BigDecimal legacyMonetaryValue(String value) {
+        if (value == null || value.isBlank()) {
+            return BigDecimal.ZERO;
+        }
+        value = value.replace("CZK", "").replace(",", "").replaceAll("\\s+", "");
+        return new BigDecimal(value);
+    }
+
+    @FunctionalInterface
+    private interface Decoder {
+        BigDecimal decode(Cell cell);
+    }
+}
@@ -0,0 +1,69 @@
+package cz.czeckout.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+
+class DateColumnParserTest {
+
+    private static final LocalDate DATE = LocalDate.of(2024, 2, 14);
+
+    private final DateColumnParser parser = new DateColumnParser();
+
+    @Test
+    void parsesEachFormat() {
+        assertEquals(DATE, parser.parse("2024-02-14"));
+        assertEquals(DATE, parser.parse("02-14-24"));
+        assertEquals(DATE, parser.parse("2/14/2024"));
+        assertEquals(DATE, parser.parse("02/14/2024"));
+        assertEquals(LocalDate.of(2024, 12, 1), parser.parse("12/1/2024"));
+    }
+
+    @Test
+    void takesDatesAsTheyAre() {
+        assertEquals(DATE, parser.parse(DATE));
+    }
+
+    @Test
+    void clampsDaysBeyondEndOfMonth() {
+        assertEquals(LocalDate.of(2023, 2, 28), parser.parse("2023-02-29"));
+        assertEquals(LocalDate.of(2024, 2, 29), parser.parse("2024-02-30"));
+        assertEquals(LocalDate.of(2024, 2, 29), parser.parse("02-31-24"));
+        assertEquals(LocalDate.of(2024, 4, 30), parser.parse("4/31/2024"));
+        assertEquals(LocalDate.of(2024, 1, 31), parser.parse("2024-01-31"));
+    }
+
+    @Test
+    void readsTwoDigitYearsInThisCentury() {
+        assertEquals(LocalDate.of(2000, 1, 5), parser.parse("01-05-00"));
+        assertEquals(LocalDate.of(2099, 12, 31), parser.parse("12-31-99"));
+    }
+
+    @Test
+    void switchesFormatWithinColumn() {
+        assertEquals(DATE, parser.parse("2/14/2024"));
+        assertEquals(DATE.plusDays(1), parser.parse("2/15/2024"));
+        assertEquals(DATE, parser.parse("2024-02-14"));
+        assertEquals(DATE, parser.parse("02-14-24"));
+        assertEquals(DATE.plusDays(1), parser.parse("2/15/2024"));
+        // A value that is not a date does not change the memoized format
+        assertNull(parser.parse("tomorrow"));
+        assertEquals(DATE, parser.parse("2/14/2024"));
+    }
+
+    @Test
+    void leavesBlankAndInvalidValuesEmpty() {
+        assertNull(parser.parse(null));
+        assertNull(parser.parse(" "));
+        assertNull(parser.parse("2024-13-01"));
+        assertNull(parser.parse("2024-02-32"));
+        assertNull(parser.parse("2024-00-10"));
+        assertNull(parser.parse("2024/02/14"));
+        assertNull(parser.parse("14.2.2024"));
+        assertNull(parser.parse("2024-2-14"));
+        assertNull(parser.parse("ab-cd-ef"));
+    }
+}
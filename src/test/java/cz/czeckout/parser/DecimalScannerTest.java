@@ -0,0 +1,102 @@
+package cz.czeckout.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.Test;
+
+class DecimalScannerTest {
+
+    @Test
+    void skipsGroupingWhitespaceAndCurrency() {
+        assertEquals(new BigDecimal("1234.50"), monetary("1 234,50 CZK"));
+        assertEquals(new BigDecimal("1234.50"), monetary("1 234,50 Kč"));
+        assertEquals(new BigDecimal("1234567.5"), monetary("1'234'567.5"));
+        assertEquals(new BigDecimal("21"), decimal("21 %"));
+        assertEquals(new BigDecimal("42"), decimal("42"));
+    }
+
+    @Test
+    void takesLastOfMixedSeparatorsAsDecimal() {
+        assertEquals(new BigDecimal("1234.50"), monetary("1,234.50"));
+        assertEquals(new BigDecimal("1234.50"), monetary("1.234,50"));
+        assertEquals(new BigDecimal("1234567.89"), monetary("1,234,567.89"));
+        assertEquals(new BigDecimal("1234567.89"), monetary("1.234.567,89"));
+        // The same for quantities and rates
+        assertEquals(new BigDecimal("1234.5"), decimal("1.234,5"));
+    }
+
+    @Test
+    void groupsThousandsByRepeatedSeparator() {
+        assertEquals(new BigDecimal("1234567"), monetary("1,234,567"));
+        assertEquals(new BigDecimal("1234567"), monetary("1.234.567"));
+        assertEquals(new BigDecimal("1234567"), decimal("1,234,567"));
+    }
+
+    @Test
+    void takesSingleDotAsDecimal() {
+        assertEquals(new BigDecimal("1.234"), monetary("1.234"));
+        assertEquals(new BigDecimal("0.21"), decimal("0.21"));
+        assertEquals(new BigDecimal("0.5"), decimal(".5"));
+    }
+
+    @Test
+    void groupsThousandsBySingleCommaFollowedByThreeDigitsInMonetaryValues() {
+        assertEquals(new BigDecimal("1234"), monetary("1,234"));
+        assertEquals(new BigDecimal("1234"), monetary("1,234 CZK"));
+        assertEquals(new BigDecimal("1.23"), monetary("1,23"));
+        assertEquals(new BigDecimal("1.2345"), monetary("1,2345"));
+        // Digits before the comma do not matter
+        assertEquals(new BigDecimal("12345"), monetary("12,345"));
+    }
+
+    @Test
+    void takesSingleCommaAsDecimalInQuantitiesAndRates() {
+        assertEquals(new BigDecimal("1.234"), decimal("1,234"));
+        assertEquals(new BigDecimal("0.21"), decimal("0,21"));
+        assertEquals(new BigDecimal("2.5"), decimal("2,5"));
+    }
+
+    @Test
+    void readsLeadingMinusAsNegative() {
+        assertEquals(new BigDecimal("-1234.50"), monetary("-1 234,50 CZK"));
+        assertEquals(new BigDecimal("-1234.50"), monetary("CZK -1 234,50"));
+        assertEquals(new BigDecimal("-0.5"), decimal("-0,5"));
+        // Only before the first digit
+        assertEquals(new BigDecimal("125"), decimal("12-5"));
+    }
+
+    @Test
+    void keepsPrecisionBeyondLong() {
+        assertEquals(new BigDecimal("123456789012345678"), decimal("123456789012345678"));
+        assertEquals(new BigDecimal("1234567890123456789"), decimal("1234567890123456789"));
+        assertEquals(new BigDecimal("12345678901234567890.12"), monetary("12 345 678 901 234 567 890,12 CZK"));
+        assertEquals(new BigDecimal("-1234567890123456789.5"), monetary("-1,234,567,890,123,456,789.5"));
+        assertEquals(new BigDecimal("1234567890123456789012"), monetary("1,234,567,890,123,456,789,012"));
+    }
+
+    @Test
+    void rejectsTextWithoutDigits() {
+        assertThrows(NumberFormatException.class, () -> monetary(""));
+        assertThrows(NumberFormatException.class, () -> monetary("CZK"));
+        assertThrows(NumberFormatException.class, () -> decimal("-,."));
+        assertThrows(NumberFormatException.class, () -> monetary("ERROR:#VALUE!"));
+    }
+
+    @Test
+    void rejectsRepeatedDecimalSeparator() {
+        assertThrows(NumberFormatException.class, () -> monetary("1,234.5.0"));
+        assertThrows(NumberFormatException.class, () -> monetary("1.234,5,0"));
+        assertThrows(NumberFormatException.class, () -> decimal("1.2,3.4"));
+    }
+
+    private static BigDecimal monetary(final String text) {
+        return DecimalScanner.parse(text, true);
+    }
+
+    private static BigDecimal decimal(final String text) {
+        return DecimalScanner.parse(text, false);
+    }
+}
@@ -0,0 +1,183 @@
+package cz.czeckout.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import cz.czeckout.entity.Invoice;
+import cz.czeckout.service.DataParsingService;
+
+class StructuredInvoiceReaderTest {
+
+    private static final String JSON = """
+        {
+          "parties": [{"id": "P1", "name": "Dodavatel s.r.o.", "vat": "12345678", "identifier": ""}],
+          "accounts": [{"id": "A1", "accountNumber": "2000145399", "bankCode": "0800"}],
+          "variables": {"currency": "CZK"},
+          "sheets": [{
+            "name": "2024",
+            "invoices": [{
+              "name": "2024001", "issuer": "P1", "account": "A1", "issueDate": "2024-02-14", "vs": "2024001",
+              "message": "", "ss": null,
+              "items": [
+                {"name": "Služby", "quantity": 2, "unitPrice": "100", "basePrice": 200, "vatRate": "0,21",
+                 "vatPrice": 42, "totalPrice": 242},
+                {"name": "Doprava", "quantity": 1, "unitPrice": 50, "basePrice": 50, "vatRate": 0.21,
+                 "vatPrice": "", "totalPrice": 50, "unit": null}
+              ]
+            }]
+          }]
+        }
+        """;
+
+    private static final String XML = """
+        <document>
+          <party><id>P1</id><name>Dodavatel s.r.o.</name><vat>12345678</vat><identifier/></party>
+          <account><id>A1</id><accountNumber>2000145399</accountNumber><bankCode>0800</bankCode></account>
+          <variables><currency>CZK</currency></variables>
+          <sheet name="2024">
+            <invoice>
+              <name>2024001</name><issuer>P1</issuer><account>A1</account><issueDate>2024-02-14</issueDate>
+              <vs>2024001</vs><message></message><ss/>
+              <item>
+                <name>Služby</name><quantity>2</quantity><unitPrice>100</unitPrice><basePrice>200</basePrice>
+                <vatRate>0,21</vatRate><vatPrice>42</vatPrice><totalPrice>242</totalPrice>
+              </item>
+              <item>
+                <name>Doprava</name><quantity>1</quantity><unitPrice>50</unitPrice><basePrice>50</basePrice>
+                <vatRate>0.21</vatRate><vatPrice/><totalPrice>50</totalPrice><unit></unit>
+              </item>
+            </invoice>
+          </sheet>
+        </document>
+        """;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsSameEntitiesAsWorkbook() throws IOException {
+        final var workbook = directory.resolve("Invoices.xlsx");
+        writeWorkbook(workbook);
+        final var json = write("Invoices.json", JSON);
+        final var xml = write("Invoices.xml", XML);
+
+        final var parsingService = new DataParsingService();
+        final var expected = parsingService.parseWorkbook(workbook);
+        assertEquals(2, expected.get("2024").getInvoices().get(0).getItems().size());
+
+        assertEquals(expected, parsingService.parseWorkbook(json));
+        assertEquals(expected, parsingService.parseWorkbook(xml));
+    }
+
+    @Test
+    void readsEmptyValuesAsNullOrZero() throws IOException {
+        for (var document : List.of(write("Invoices.json", JSON), write("Invoices.xml", XML))) {
+            final var invoices = read(document);
+
+            assertEquals(1, invoices.size(), document::toString);
+            final var invoice = invoices.get(0);
+            assertNull(invoice.getMessage(), document::toString);
+            assertNull(invoice.getSs(), document::toString);
+            assertNull(invoice.getIssuer().getIdentifier(), document::toString);
+            assertNull(invoice.getItems().get(1).getUnit(), document::toString);
+            assertEquals(BigDecimal.ZERO, invoice.getItems().get(1).getVatPrice(), document::toString);
+            assertEquals(LocalDate.of(2024, 2, 14), invoice.getIssueDate(), document::toString);
+        }
+    }
+
+    @Test
+    void readsSheetNameAttribute() throws IOException {
+        final var sheetNames = new ArrayList<String>();
+        try (var reader = new StructuredInvoiceReader(write("Invoices.xml", XML), StructuredInvoiceReader.Format.XML)) {
+            reader.read((sheetName, invoice) -> sheetNames.add(sheetName));
+        }
+
+        assertEquals(List.of("2024"), sheetNames);
+    }
+
+    @Test
+    void rejectsMetadataAfterSheets() throws IOException {
+        final var json = write("Invoices.json", """
+            {
+              "sheets": [{"name": "2024", "invoices": []}],
+              "parties": [{"id": "P1", "name": "Dodavatel s.r.o."}]
+            }
+            """);
+        final var xml = write("Invoices.xml", """
+            <document>
+              <sheet name="2024"/>
+              <party><id>P1</id><name>Dodavatel s.r.o.</name></party>
+            </document>
+            """);
+
+        for (var document : List.of(json, xml)) {
+            final var e = assertThrows(IllegalArgumentException.class, () -> read(document), document::toString);
+            assertTrue(e.getMessage().contains("must precede the sheets"), e::getMessage);
+        }
+    }
+
+    private Path write(final String fileName, final String content) throws IOException {
+        return Files.writeString(directory.resolve(fileName), content);
+    }
+
+    private static List<Invoice> read(final Path document) throws IOException {
+        final var invoices = new ArrayList<Invoice>();
+        try (var reader = new StructuredInvoiceReader(document, StructuredInvoiceReader.Format.of(document))) {
+            reader.read((sheetName, invoice) -> invoices.add(invoice));
+        }
+        return invoices;
+    }
+
+    private static void writeWorkbook(final Path file) throws IOException {
+        try (var workbook = new XSSFWorkbook(); var out = Files.newOutputStream(file)) {
+            final var root = workbook.createSheet("ROOT");
+            row(root, 0, "", "PARTIES");
+            row(root, 1, "", "ID", "NAME", "VAT");
+            row(root, 2, "", "P1", "Dodavatel s.r.o.", "12345678");
+            row(root, 4, "", "ACCOUNTS");
+            row(root, 5, "", "ID", "ACCOUNT NUMBER", "BANK CODE");
+            row(root, 6, "", "A1", "2000145399", "0800");
+            row(root, 8, "", "VARIABLES");
+            row(root, 9, "", "KEY", "VALUE");
+            row(root, 10, "", "currency", "CZK");
+
+            final var sheet = workbook.createSheet("2024");
+            row(sheet, 0, "INVOICES");
+            row(sheet, 1, "INVOICE", "ISSUER", "ACCOUNT", "ISSUE DATE", "VS",
+                "ITEM", "QUANTITY", "UNIT PRICE", "BASE PRICE", "VAT RATE", "VAT", "TOTAL PRICE");
+            final var invoiceRow = row(sheet, 2, "2024001", "P1", "A1", "", "2024001",
+                "Služby", "2", "100", "200", "0,21", "42", "242");
+            final var dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("d.m.yyyy"));
+            invoiceRow.getCell(3).setCellValue(LocalDate.of(2024, 2, 14));
+            invoiceRow.getCell(3).setCellStyle(dateStyle);
+            row(sheet, 3, "", "", "", "", "",
+                "Doprava", "1", "50", "50", "0,21", "", "50");
+            workbook.write(out);
+        }
+    }
+
+    private static Row row(final Sheet sheet, final int rowNum, final String... values) {
+        final var row = sheet.createRow(rowNum);
+        for (int i = 0; i < values.length; i++) {
+            row.createCell(i).setCellValue(values[i]);
+        }
+        return row;
+    }
+}
@@ -0,0 +1,112 @@
+package cz.czeckout.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import cz.czeckout.entity.Invoice;
+import cz.czeckout.entity.Item;
+import cz.czeckout.entity.Metadata;
+import cz.czeckout.entity.Party;
+
+class WorkbookParseCacheTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void loadsStoredEntries() {
+        final var cache = new WorkbookParseCache(directory.resolve("cache"));
+        final var metadata = metadata();
+        cache.storeMetadata("m", metadata);
+        cache.storeInvoices("s", List.of(invoice(metadata)));
+
+        final var loadedMetadata = cache.loadMetadata("m");
+        assertEquals(metadata, loadedMetadata);
+        final var loadedInvoices = cache.loadInvoices("s", loadedMetadata);
+        assertEquals(List.of(invoice(metadata)), loadedInvoices);
+        // Resolved against the metadata, not copies of the parties
+        assertSame(loadedMetadata.getParties().get("P1"), loadedInvoices.get(0).getIssuer());
+    }
+
+    @Test
+    void continuesWithoutUnwritableEntries() throws IOException {
+        // The directory cannot be created in place of the file
+        final var file = Files.writeString(directory.resolve("cache"), "");
+        final var cache = new WorkbookParseCache(file);
+        cache.storeMetadata("m", metadata());
+
+        assertNull(cache.loadMetadata("m"));
+    }
+
+    @Test
+    void treatsUnreadableEntriesAsMissing() throws IOException {
+        final var cache = new WorkbookParseCache(directory);
+        Files.writeString(directory.resolve("m.bin"), "truncated");
+
+        assertNull(cache.loadMetadata("m"));
+        assertNull(cache.loadMetadata("missing"));
+    }
+
+    @Test
+    void keysChangeWithTheirSheetsOnly() throws IOException {
+        final var cache = new WorkbookParseCache(directory.resolve("cache"));
+        final var workbook = directory.resolve("Invoices.xlsx");
+        writeWorkbook(workbook, "A");
+        final var original = cache.fingerprint(workbook, "ALWAYS");
+        assertEquals(List.of("S1", "S2"), List.copyOf(original.getSheetKeys().keySet()));
+        assertEquals(original.getSheetKeys(), cache.fingerprint(workbook, "ALWAYS").getSheetKeys());
+        assertNotEquals(original.getMetadataKey(), cache.fingerprint(workbook, "NEVER").getMetadataKey());
+
+        writeWorkbook(workbook, "B");
+        final var edited = cache.fingerprint(workbook, "ALWAYS");
+        assertEquals(original.getMetadataKey(), edited.getMetadataKey());
+        assertEquals(original.getSheetKeys().get("S1"), edited.getSheetKeys().get("S1"));
+        assertNotEquals(original.getSheetKeys().get("S2"), edited.getSheetKeys().get("S2"));
+    }
+
+    private static void writeWorkbook(final Path file, final String secondSheetValue) throws IOException {
+        try (var workbook = new XSSFWorkbook(); var out = Files.newOutputStream(file)) {
+            workbook.createSheet("ROOT").createRow(0).createCell(0).setCellValue("Parties");
+            workbook.createSheet("S1").createRow(0).createCell(0).setCellValue("A");
+            workbook.createSheet("S2").createRow(0).createCell(0).setCellValue(secondSheetValue);
+            workbook.write(out);
+        }
+    }
+
+    private static Metadata metadata() {
+        final var party = new Party();
+        party.setId("P1");
+        party.setName("Dodavatel s.r.o.");
+        return new Metadata(Map.of("P1", party), Map.of(), Map.of(), Map.of(), Map.of("currency", "CZK"));
+    }
+
+    private static Invoice invoice(final Metadata metadata) {
+        final var item = new Item();
+        item.setName("Služby");
+        item.setQuantity(new BigDecimal("1.5"));
+        item.setBasePrice(new BigDecimal("100.00"));
+        item.setVatRate(new BigDecimal("0.21"));
+
+        final var invoice = new Invoice();
+        invoice.setName("2024001");
+        invoice.setIssuer(metadata.getParties().get("P1"));
+        invoice.setIssueDate(LocalDate.of(2024, 2, 14));
+        invoice.setVs("2024001");
+        invoice.getItems().add(item);
+        return invoice;
+    }
+}
@@ -0,0 +1,84 @@
+package cz.czeckout.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import cz.czeckout.parser.FormulaEvaluationPolicy;
+
+class DataParsingServiceTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void parsesSameDataInMemoryAndStreaming() throws IOException {
+        final var workbook = directory.resolve("Invoices.xlsx");
+        writeWorkbook(workbook);
+
+        final var inMemory = new DataParsingService(false, 1, FormulaEvaluationPolicy.ALWAYS, null)
+            .parseWorkbook(workbook);
+        final var streaming = new DataParsingService(true, 1, FormulaEvaluationPolicy.ALWAYS, null)
+            .parseWorkbook(workbook);
+
+        assertEquals(inMemory, streaming);
+        final var items = streaming.get("2024").getInvoices().get(0).getItems();
+        assertEquals(2, items.size());
+        // The cached results of the formulas, an error is read as an empty cell
+        assertEquals(new BigDecimal("242"), items.get(0).getTotalPrice());
+        assertEquals(BigDecimal.ZERO, items.get(1).getVatPrice());
+        assertEquals(LocalDate.of(2024, 2, 14), streaming.get("2024").getInvoices().get(0).getIssueDate());
+    }
+
+    private static void writeWorkbook(final Path file) throws IOException {
+        try (var workbook = new XSSFWorkbook(); var out = Files.newOutputStream(file)) {
+            final var root = workbook.createSheet("ROOT");
+            row(root, 0, "", "PARTIES");
+            row(root, 1, "", "ID", "NAME", "VAT");
+            row(root, 2, "", "P1", "Dodavatel s.r.o.", "12345678");
+            row(root, 4, "", "ACCOUNTS");
+            row(root, 5, "", "ID", "ACCOUNT NUMBER", "BANK CODE");
+            row(root, 6, "", "A1", "2000145399", "0800");
+            row(root, 8, "", "VARIABLES");
+            row(root, 9, "", "KEY", "VALUE");
+            row(root, 10, "", "currency", "CZK");
+
+            final var sheet = workbook.createSheet("2024");
+            row(sheet, 0, "INVOICES");
+            row(sheet, 1, "INVOICE", "ISSUER", "ACCOUNT", "ISSUE DATE", "VS",
+                "ITEM", "QUANTITY", "UNIT PRICE", "BASE PRICE", "VAT RATE", "VAT", "TOTAL PRICE");
+            final var invoiceRow = row(sheet, 2, "2024001", "P1", "A1", "", "2024001",
+                "Služby", "2", "100", "200", "0,21", "42", "");
+            final var dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("d.m.yyyy"));
+            invoiceRow.getCell(3).setCellValue(LocalDate.of(2024, 2, 14));
+            invoiceRow.getCell(3).setCellStyle(dateStyle);
+            invoiceRow.getCell(11).setCellFormula("I3+K3");
+            final var itemRow = row(sheet, 3, "", "", "", "", "",
+                "Doprava", "1", "50", "50", "0,21", "", "50");
+            itemRow.getCell(10).setCellFormula("E4+F4"); // Adds the item name, #VALUE!
+
+            // Stores the cached results, the streaming mode reads only those
+            workbook.getCreationHelper().createFormulaEvaluator().evaluateAll();
+            workbook.write(out);
+        }
+    }
+
+    private static Row row(final Sheet sheet, final int rowNum, final String... values) {
+        final var row = sheet.createRow(rowNum);
+        for (int i = 0; i < values.length; i++) {
+            row.createCell(i).setCellValue(values[i]);
+        }
+        return row;
+    }
+}